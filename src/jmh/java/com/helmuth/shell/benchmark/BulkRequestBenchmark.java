@@ -0,0 +1,82 @@
+package com.helmuth.shell.benchmark;
+
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.NdJsonpSerializable;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.model.RawDocument;
+import jakarta.json.stream.JsonGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of building the index operations of a bulk request and serializing them to the NDJSON body the
+ * transport sends, in operations per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BulkRequestBenchmark {
+    private static final int BATCH_SIZE = 1000;
+    private static final String INDEX = "benchmark";
+
+    @Param({"10", "50"})
+    public int width;
+
+    @Param({"0", "2"})
+    public int depth;
+
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 20);
+    private List<Document> documents;
+    private List<RawDocument> rawDocuments;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        documents = SyntheticDocuments.generate(BATCH_SIZE, width, depth);
+        List<String> jsons = SyntheticDocuments.toJson(documents);
+        rawDocuments = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            rawDocuments.add(new RawDocument(documents.get(i).get_id(), jsons.get(i)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int documents() {
+        body.reset();
+        for (Document document : documents) {
+            serialize(BulkOperation.of(op -> op.index(i -> i.index(INDEX).id(document.get_id()).document(document))));
+        }
+        return body.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int rawDocuments() {
+        body.reset();
+        for (RawDocument document : rawDocuments) {
+            serialize(BulkOperation.of(op -> op.index(i -> i.index(INDEX).id(document.get_id()).document(document))));
+        }
+        return body.size();
+    }
+
+    private void serialize(NdJsonpSerializable operation) {
+        Iterator<?> lines = operation._serializables();
+        while (lines.hasNext()) {
+            JsonGenerator generator = mapper.jsonProvider().createGenerator(body);
+            mapper.serialize(lines.next(), generator);
+            generator.close();
+            body.write('\n');
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.helmuth.shell.benchmark;
+
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.util.CsvDocumentReader;
+import com.helmuth.shell.util.DocumentReader;
+import com.helmuth.shell.util.ParallelCsvReader;
+import com.opencsv.CSVWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of parsing a CSV file into documents for import, in rows per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CsvImportBenchmark {
+    private static final int ROWS = 10_000;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"10", "50"})
+    public int width;
+
+    @Param({"false", "true"})
+    public boolean typed;
+
+    private Path file;
+    private Map<String, String> fieldTypes;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        file = Files.createTempFile("csv-benchmark", ".csv");
+        List<Document> documents = SyntheticDocuments.generate(ROWS, width, 0);
+        try (CSVWriter writer = new CSVWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            List<String> header = new ArrayList<>(documents.getFirst().keySet());
+            fieldTypes = typed ? SyntheticDocuments.fieldTypes(header) : Map.of();
+            writer.writeNext(header.toArray(String[]::new));
+            for (Document document : documents) {
+                Map<String, Object> flat = SyntheticDocuments.flatten(document);
+                writer.writeNext(header.stream().map(field -> String.valueOf(flat.get(field))).toArray(String[]::new));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void read(Blackhole blackhole) throws IOException {
+        consume(new CsvDocumentReader(file.toFile(), BATCH_SIZE, fieldTypes), blackhole);
+    }
+
+    /**
+     * Rows per second of the whole parallel reader, so divide by the core count for the throughput per core.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void readParallel(Blackhole blackhole) throws IOException {
+        consume(new ParallelCsvReader(file.toFile(), BATCH_SIZE, Runtime.getRuntime().availableProcessors(), fieldTypes, 256 * 1024), blackhole);
+    }
+
+    private static void consume(DocumentReader openedReader, Blackhole blackhole) throws IOException {
+        try (DocumentReader reader = openedReader) {
+            List<Document> batch = reader.nextBatch();
+            while (!batch.isEmpty()) {
+                blackhole.consume(batch);
+                batch = reader.nextBatch();
+            }
+        }
+    }
+}
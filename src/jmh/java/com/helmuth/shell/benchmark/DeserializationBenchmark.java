@@ -0,0 +1,67 @@
+package com.helmuth.shell.benchmark;
+
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.model.RawDocument;
+import jakarta.json.stream.JsonParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of deserializing the hits of a search response page the way the client does, into maps and
+ * into raw JSON text, in hits per second. Heterogeneous pages give every hit its own key order, the worst case
+ * for sharing key schemas between documents.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DeserializationBenchmark {
+    private static final int PAGE_SIZE = 1000;
+
+    @Param({"10", "50", "500"})
+    public int width;
+
+    @Param({"0", "2"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean heterogeneous;
+
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+    private final JsonpDeserializer<SearchResponse<Document>> documentDeserializer =
+            SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(Document.class));
+    private final JsonpDeserializer<SearchResponse<RawDocument>> rawDeserializer =
+            SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(RawDocument.class));
+    private byte[] response;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        response = SyntheticDocuments.toSearchResponse(SyntheticDocuments.generate(PAGE_SIZE, width, depth, heterogeneous))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public SearchResponse<Document> documents() {
+        try (JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(response))) {
+            return documentDeserializer.deserialize(parser, mapper);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public SearchResponse<RawDocument> rawDocuments() {
+        try (JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(response))) {
+            return rawDeserializer.deserialize(parser, mapper);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.helmuth.shell.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.helmuth.shell.model.Document;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process HTTP server answering the part of the Elasticsearch API this tool uses, so exports and imports
+ * can be load tested without a cluster: searches with scroll, point in time, search_after and slices, scroll
+ * continuation and clearing, bulk, count, cat indices and mappings. Every request can be delayed by a fixed
+ * latency, and bulk items can be rejected with 429 at a given rate to exercise retries.
+ */
+public class ElasticsearchStub implements Closeable {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String SHARDS = "{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0}";
+
+    private final HttpServer server;
+    private final int latencyMillis;
+    private final double rejectionRate;
+    private final Map<String, StubIndex> indices = new ConcurrentHashMap<>();
+    private final Map<String, Cursor> scrolls = new ConcurrentHashMap<>();
+    private final Map<String, String> pointsInTime = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Starts the stub on a free local port.
+     * @param latencyMillis The delay added to every request
+     * @param rejectionRate The share of bulk items rejected with 429, between 0 and 1
+     */
+    public ElasticsearchStub(int latencyMillis, double rejectionRate) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.rejectionRate = rejectionRate;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Adds an index holding the given documents, with a mapping derived from the first of them.
+     */
+    public void addIndex(String name, List<Document> documents) {
+        List<String> sources = SyntheticDocuments.toJson(documents);
+        List<String> documentIds = documents.stream().map(Document::get_id).toList();
+        Map<String, Object> mapping = documents.isEmpty() ? Map.of() : properties(documents.getFirst());
+        indices.put(name, new StubIndex(name, documentIds, sources, mapping, new AtomicLong()));
+    }
+
+    /**
+     * @return The number of documents bulk indexed into an index so far
+     */
+    public long indexedCount(String name) {
+        StubIndex index = indices.get(name);
+        return index != null ? index.indexed().get() : 0;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String[] parts = path.substring(1).split("/");
+
+            if (path.equals("/")) {
+                respond(exchange, method, 200, "{\"name\":\"stub\",\"cluster_name\":\"stub\",\"cluster_uuid\":\"stub\","
+                        + "\"version\":{\"number\":\"8.17.0\",\"build_flavor\":\"default\",\"build_type\":\"stub\","
+                        + "\"build_hash\":\"stub\",\"build_date\":\"2025-01-01T00:00:00Z\",\"build_snapshot\":false,"
+                        + "\"lucene_version\":\"9.12.0\",\"minimum_wire_compatibility_version\":\"7.17.0\","
+                        + "\"minimum_index_compatibility_version\":\"7.0.0\"},\"tagline\":\"You Know, for Search\"}");
+            } else if (parts[parts.length - 1].equals("_bulk")) {
+                respond(exchange, method, 200, bulk(body, parts.length > 1 ? parts[0] : null));
+            } else if (path.equals("/_search/scroll")) {
+                respond(exchange, method, 200, method.equals("DELETE") ? clearScroll(body) : scroll(body));
+            } else if (path.equals("/_pit")) {
+                pointsInTime.remove(objectMapper.readTree(body).path("id").asText());
+                respond(exchange, method, 200, "{\"succeeded\":true,\"num_freed\":1}");
+            } else if (path.equals("/_search")) {
+                respond(exchange, method, 200, search(null, objectMapper.readTree(emptyToObject(body)), query));
+            } else if (path.equals("/_cat/indices")) {
+                respond(exchange, method, 200, catIndices());
+            } else if (parts.length == 2 && indices.containsKey(parts[0])) {
+                StubIndex index = indices.get(parts[0]);
+                switch (parts[1]) {
+                    case "_search" -> respond(exchange, method, 200, search(index, objectMapper.readTree(emptyToObject(body)), query));
+                    case "_pit" -> respond(exchange, method, 200, openPointInTime(index));
+                    case "_count" -> respond(exchange, method, 200,
+                            "{\"count\":" + (index.sources().size() + index.indexed().get()) + ",\"_shards\":" + SHARDS + "}");
+                    case "_mapping" -> respond(exchange, method, 200, objectMapper.writeValueAsString(
+                            Map.of(index.name(), Map.of("mappings", Map.of("properties", index.mapping())))));
+                    default -> notFound(exchange, method, path);
+                }
+            } else {
+                notFound(exchange, method, path);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            respond(exchange, "POST", 500, "{\"error\":{\"type\":\"stub_exception\",\"reason\":\""
+                    + String.valueOf(e.getMessage()).replace("\"", "'") + "\"},\"status\":500}");
+        }
+    }
+
+    private String search(StubIndex index, JsonNode request, Map<String, String> query) throws IOException {
+        int size = request.path("size").asInt(10);
+        int sliceId = request.path("slice").path("id").asInt(0);
+        int maxSlices = request.path("slice").path("max").asInt(1);
+        JsonNode pit = request.path("pit");
+
+        if (!pit.isMissingNode()) {
+            String pitId = pit.path("id").asText();
+            StubIndex pitIndex = indices.get(pointsInTime.get(pitId));
+            if (pitIndex == null) {
+                throw new IllegalArgumentException("No search context found for id [" + pitId + "]");
+            }
+            long after = request.path("search_after").isArray() ? request.path("search_after").get(0).asLong() : -1;
+            Cursor cursor = new Cursor(pitIndex, maxSlices, nextInSlice((int) after, sliceId, maxSlices));
+            return hits(cursor, size, null, pitId, !request.path("track_total_hits").asText().equals("false"));
+        }
+        if (index == null) {
+            throw new IllegalArgumentException("A search without index needs a point in time");
+        }
+        if (query.containsKey("scroll")) {
+            String scrollId = "scroll-" + ids.incrementAndGet();
+            Cursor cursor = new Cursor(index, maxSlices, nextInSlice(-1, sliceId, maxSlices));
+            scrolls.put(scrollId, cursor);
+            return hits(cursor, size, scrollId, null, true);
+        }
+        int from = request.path("from").asInt(0);
+        return hits(new Cursor(index, 1, from), size, null, null, true);
+    }
+
+    private String scroll(byte[] body) throws IOException {
+        String scrollId = objectMapper.readTree(body).path("scroll_id").asText();
+        Cursor cursor = scrolls.get(scrollId);
+        if (cursor == null) {
+            throw new IllegalArgumentException("No search context found for id [" + scrollId + "]");
+        }
+        return hits(cursor, cursor.size, scrollId, null, true);
+    }
+
+    private String clearScroll(byte[] body) throws IOException {
+        JsonNode scrollIds = objectMapper.readTree(body).path("scroll_id");
+        int freed = 0;
+        for (JsonNode scrollId : scrollIds.isArray() ? scrollIds : objectMapper.createArrayNode().add(scrollIds)) {
+            freed += scrolls.remove(scrollId.asText()) != null ? 1 : 0;
+        }
+        return "{\"succeeded\":true,\"num_freed\":" + freed + "}";
+    }
+
+    private String openPointInTime(StubIndex index) {
+        String pitId = "pit-" + ids.incrementAndGet();
+        pointsInTime.put(pitId, index.name());
+        return "{\"id\":\"" + pitId + "\",\"_shards\":" + SHARDS + "}";
+    }
+
+    /**
+     * Writes the next page of a cursor, sorted by position in the index, which stands in for _shard_doc.
+     */
+    private String hits(Cursor cursor, int size, String scrollId, String pitId, boolean trackTotalHits) {
+        cursor.size = size;
+        StubIndex index = cursor.index;
+        StringBuilder json = new StringBuilder(size * 256).append("{\"took\":1,\"timed_out\":false,");
+        if (scrollId != null) {
+            json.append("\"_scroll_id\":\"").append(scrollId).append("\",");
+        }
+        if (pitId != null) {
+            json.append("\"pit_id\":\"").append(pitId).append("\",");
+        }
+        json.append("\"_shards\":").append(SHARDS).append(",\"hits\":{");
+        if (trackTotalHits) {
+            json.append("\"total\":{\"value\":").append(index.sources().size() / cursor.maxSlices).append(",\"relation\":\"eq\"},");
+        }
+        json.append("\"max_score\":null,\"hits\":[");
+        synchronized (cursor) {
+            int count = 0;
+            while (count < size && cursor.position < index.sources().size()) {
+                int position = cursor.position;
+                if (count++ > 0) {
+                    json.append(',');
+                }
+                json.append("{\"_index\":\"").append(index.name()).append("\",\"_id\":\"").append(index.ids().get(position))
+                        .append("\",\"_score\":null,\"_source\":").append(index.sources().get(position))
+                        .append(",\"sort\":[").append(position).append("]}");
+                cursor.position = position + cursor.maxSlices;
+            }
+        }
+        return json.append("]}}").toString();
+    }
+
+    private static int nextInSlice(int after, int sliceId, int maxSlices) {
+        int next = after + 1;
+        int offset = Math.floorMod(sliceId - next, maxSlices);
+        return next + offset;
+    }
+
+    private String bulk(byte[] body, String defaultIndex) throws IOException {
+        ArrayNode items = objectMapper.createArrayNode();
+        boolean errors = false;
+        Random random = ThreadLocalRandom.current();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode action = objectMapper.readTree(line);
+                String operation = action.fieldNames().next();
+                JsonNode metadata = action.get(operation);
+                if (!operation.equals("delete")) {
+                    reader.readLine();
+                }
+                String indexName = metadata.path("_index").asText(defaultIndex);
+                String id = metadata.hasNonNull("_id") ? metadata.get("_id").asText() : "stub-" + ids.incrementAndGet();
+
+                ObjectNode item = objectMapper.createObjectNode().put("_index", indexName).put("_id", id);
+                if (random.nextDouble() < rejectionRate) {
+                    errors = true;
+                    item.put("status", 429).putObject("error")
+                            .put("type", "es_rejected_execution_exception")
+                            .put("reason", "rejected execution of coordinating operation");
+                } else {
+                    indices.computeIfAbsent(indexName, name -> new StubIndex(name, List.of(), List.of(), Map.of(), new AtomicLong()))
+                            .indexed().incrementAndGet();
+                    item.put("status", 201).put("result", "created").put("_version", 1)
+                            .put("_seq_no", 0).put("_primary_term", 1)
+                            .set("_shards", objectMapper.readTree("{\"total\":1,\"successful\":1,\"failed\":0}"));
+                }
+                items.addObject().set(operation, item);
+            }
+        }
+        ObjectNode response = objectMapper.createObjectNode().put("took", 1).put("errors", errors);
+        response.set("items", items);
+        return objectMapper.writeValueAsString(response);
+    }
+
+    private String catIndices() throws IOException {
+        List<Map<String, Object>> records = new ArrayList<>();
+        indices.values().forEach(index -> records.add(Map.of("health", "green", "status", "open", "index", index.name(),
+                "docs.count", String.valueOf(index.sources().size() + index.indexed().get()))));
+        return objectMapper.writeValueAsString(records);
+    }
+
+    private static Map<String, Object> properties(Map<String, Object> document) {
+        Map<String, Object> properties = new HashMap<>();
+        document.forEach((field, value) -> {
+            if (value instanceof Map<?, ?> object) {
+                Map<String, Object> nested = new HashMap<>();
+                object.forEach((key, nestedValue) -> nested.put(String.valueOf(key), nestedValue));
+                properties.put(field, Map.of("properties", properties(nested)));
+            } else {
+                String type = switch (value) {
+                    case Integer ignored -> "long";
+                    case Long ignored -> "long";
+                    case Boolean ignored -> "boolean";
+                    case null, default -> "keyword";
+                };
+                properties.put(field, Map.of("type", type));
+            }
+        });
+        return properties;
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = equals >= 0 ? parameter.substring(0, equals) : parameter;
+                String value = equals >= 0 ? URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8) : "";
+                query.put(name, value);
+            }
+        }
+        return query;
+    }
+
+    private static byte[] emptyToObject(byte[] body) {
+        return body.length == 0 ? "{}".getBytes(StandardCharsets.UTF_8) : body;
+    }
+
+    private static void notFound(HttpExchange exchange, String method, String path) throws IOException {
+        respond(exchange, method, 404, "{\"error\":{\"type\":\"index_not_found_exception\",\"reason\":\"no such index ["
+                + path + "]\"},\"status\":404}");
+    }
+
+    private static void respond(HttpExchange exchange, String method, int status, String json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("X-Elastic-Product", "Elasticsearch");
+        if (method.equals("HEAD")) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private record StubIndex(String name, List<String> ids, List<String> sources, Map<String, Object> mapping,
+                             AtomicLong indexed) {
+    }
+
+    /**
+     * The position of a scroll or search_after page within one slice of an index.
+     */
+    private static class Cursor {
+        private final StubIndex index;
+        private final int maxSlices;
+        private int position;
+        private int size;
+
+        Cursor(StubIndex index, int maxSlices, int position) {
+            this.index = index;
+            this.maxSlices = maxSlices;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.helmuth.shell.benchmark;
+
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.model.RawDocument;
+import com.helmuth.shell.util.DocumentExporter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of writing a page of documents to CSV, JSON and NDJSON files, in documents per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ExporterBenchmark {
+    private static final int PAGE_SIZE = 1000;
+
+    @Param({"10", "50"})
+    public int width;
+
+    @Param({"0", "2"})
+    public int depth;
+
+    @Param({".csv", ".json", ".ndjson"})
+    public String format;
+
+    private List<Document> documents;
+    private List<RawDocument> rawDocuments;
+    private Map<String, String> mappedFields;
+    private Path output;
+    private DocumentExporter exporter;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        documents = SyntheticDocuments.generate(PAGE_SIZE, width, depth);
+        List<String> jsons = SyntheticDocuments.toJson(documents);
+        rawDocuments = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            rawDocuments.add(new RawDocument(documents.get(i).get_id(), jsons.get(i)));
+        }
+        mappedFields = new LinkedHashMap<>();
+        SyntheticDocuments.flatten(documents.getFirst()).keySet().forEach(field -> mappedFields.put(field, "keyword"));
+    }
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        output = Files.createTempFile("exporter-benchmark", format);
+        exporter = new DocumentExporter(output.toString(), true);
+        exporter.initialize();
+        if (exporter.needsMapping()) {
+            exporter.setMapping(mappedFields, List.of(), List.of());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        exporter.close();
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void writeDocuments() {
+        exporter.writeDocuments(documents);
+    }
+
+    /**
+     * The _source passthrough used for JSON and NDJSON exports, CSV always goes through documents.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void writeRawDocuments() {
+        if (exporter.supportsRawDocuments()) {
+            exporter.writeRawDocuments(rawDocuments);
+        } else {
+            exporter.writeDocuments(documents);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.helmuth.shell.benchmark;
+
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.util.DocumentExporter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end throughput of the scroll and import commands against an {@link ElasticsearchStub}, in documents
+ * per second. Covers the whole pipeline: HTTP, response parsing, paging, prefetching and writing for exports,
+ * reading, bulk building and retries for imports.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class PipelineBenchmark {
+    private static final int DOCUMENTS = 50_000;
+    private static final String SOURCE_INDEX = "source";
+    private static final String TARGET_INDEX = "target";
+
+    @State(Scope.Benchmark)
+    public static class Export {
+        @Param({"0", "2"})
+        public int latencyMillis;
+
+        @Param({".ndjson", ".json", ".csv"})
+        public String format;
+
+        @Param({"scroll", "pit"})
+        public String cursor;
+
+        @Param({"1", "4"})
+        public int slices;
+
+        StubShell shell;
+        Path output;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            shell = new StubShell(latencyMillis, 0);
+            shell.stub().addIndex(SOURCE_INDEX, SyntheticDocuments.generate(DOCUMENTS, 20, 1));
+            output = Files.createTempFile("pipeline-benchmark", format);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            shell.close();
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Import {
+        @Param({"0", "2"})
+        public int latencyMillis;
+
+        @Param({".ndjson", ".json"})
+        public String format;
+
+        @Param({"0", "0.01"})
+        public double rejectionRate;
+
+        StubShell shell;
+        Path input;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            shell = new StubShell(latencyMillis, rejectionRate);
+            input = Files.createTempFile("pipeline-benchmark", format);
+            List<Document> documents = SyntheticDocuments.generate(DOCUMENTS, 20, 1);
+            DocumentExporter exporter = new DocumentExporter(input.toString(), false);
+            exporter.initialize();
+            exporter.writeDocuments(documents);
+            exporter.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            shell.close();
+            Files.deleteIfExists(input);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void scroll(Export export) {
+        export.shell.indexCommand().scroll(SOURCE_INDEX, 1000, "1m", null, null, export.output.toString(), false,
+                export.slices, export.cursor, null, 2, false, 0, false, null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void importDocuments(Import imported) {
+        imported.shell.indexCommand().importDocuments(TARGET_INDEX, imported.input.toString(), 1000, 0, null);
+    }
+}
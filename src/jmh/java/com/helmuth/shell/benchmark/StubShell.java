@@ -0,0 +1,54 @@
+package com.helmuth.shell.benchmark;
+
+import com.helmuth.shell.command.IndexCommand;
+import com.helmuth.shell.elasticsearch.config.ElasticsearchClientFactory;
+import com.helmuth.shell.elasticsearch.config.ElasticsearchConnection;
+import com.helmuth.shell.elasticsearch.config.ElasticsearchProperties;
+import com.helmuth.shell.metrics.ShellMetrics;
+import com.helmuth.shell.service.AggregationExportService;
+import com.helmuth.shell.service.CopyService;
+import com.helmuth.shell.service.ExportService;
+import com.helmuth.shell.service.IndexServiceImpl;
+import com.helmuth.shell.service.MultiIndexExportService;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The index commands wired the way the application context wires them, but connected to an
+ * {@link ElasticsearchStub} instead of a cluster.
+ */
+public class StubShell implements Closeable {
+    private final ElasticsearchStub stub;
+    private final ElasticsearchConnection connection;
+    private final IndexCommand indexCommand;
+
+    public StubShell(int latencyMillis, double rejectionRate) throws IOException {
+        this.stub = new ElasticsearchStub(latencyMillis, rejectionRate);
+        ElasticsearchProperties properties = new ElasticsearchProperties();
+        properties.setHost(stub.url());
+        ElasticsearchClientFactory clientFactory = new ElasticsearchClientFactory(properties);
+        this.connection = clientFactory.connect(stub.url());
+        IndexServiceImpl indexService = new IndexServiceImpl(clientFactory.createClient(connection.restClient()),
+                properties, ShellMetrics.NOOP);
+        ExportService exportService = new ExportService(indexService, ShellMetrics.NOOP);
+        this.indexCommand = new IndexCommand(indexService, exportService,
+                new CopyService(indexService, clientFactory, properties, ShellMetrics.NOOP),
+                new MultiIndexExportService(indexService, exportService, ShellMetrics.NOOP),
+                new AggregationExportService(indexService), properties, ShellMetrics.NOOP);
+    }
+
+    public ElasticsearchStub stub() {
+        return stub;
+    }
+
+    public IndexCommand indexCommand() {
+        return indexCommand;
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+        stub.close();
+    }
+}
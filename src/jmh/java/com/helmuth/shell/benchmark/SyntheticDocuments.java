@@ -0,0 +1,166 @@
+package com.helmuth.shell.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.helmuth.shell.model.Document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates reproducible documents resembling log and catalog data: a mix of keyword, text, number, boolean
+ * and date fields, with object fields nested to a given depth.
+ */
+public final class SyntheticDocuments {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String[] WORDS = {"error", "request", "timeout", "user", "order", "shipped", "payment",
+            "cluster", "node", "shard", "index", "search", "latency", "retry", "success", "warning"};
+
+    private SyntheticDocuments() {
+    }
+
+    /**
+     * @param count The number of documents
+     * @param width The number of leaf fields per object
+     * @param depth The number of nested object levels below the top level
+     * @return The documents, each with an _id
+     */
+    public static List<Document> generate(int count, int width, int depth) {
+        return generate(count, width, depth, false);
+    }
+
+    /**
+     * @param count The number of documents
+     * @param width The number of leaf fields per object
+     * @param depth The number of nested object levels below the top level
+     * @param heterogeneous Whether every document leaves out a random quarter of the top level fields and has the
+     *                      others in random order, as in indices with dynamic or sparse fields
+     * @return The documents, each with an _id
+     */
+    public static List<Document> generate(int count, int width, int depth, boolean heterogeneous) {
+        Random random = new Random(42);
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> object = object(random, width, depth);
+            if (heterogeneous) {
+                List<String> keys = new ArrayList<>(object.keySet());
+                Collections.shuffle(keys, random);
+                Map<String, Object> shuffled = new LinkedHashMap<>();
+                for (String key : keys.subList(0, keys.size() - keys.size() / 4)) {
+                    shuffled.put(key, object.get(key));
+                }
+                object = shuffled;
+            }
+            documents.add(new Document(String.valueOf(i), object));
+        }
+        return documents;
+    }
+
+    /**
+     * @return The documents as _source JSON texts
+     */
+    public static List<String> toJson(List<Document> documents) {
+        List<String> jsons = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            try {
+                jsons.add(objectMapper.writeValueAsString(new LinkedHashMap<>(document)));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return jsons;
+    }
+
+    /**
+     * @return A search response body holding the documents as hits
+     */
+    public static String toSearchResponse(List<Document> documents) {
+        List<String> sources = toJson(documents);
+        StringBuilder json = new StringBuilder("{\"took\":5,\"timed_out\":false,")
+                .append("\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},")
+                .append("\"hits\":{\"total\":{\"value\":").append(documents.size()).append(",\"relation\":\"eq\"},")
+                .append("\"max_score\":1.0,\"hits\":[");
+        for (int i = 0; i < documents.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"_index\":\"benchmark\",\"_id\":\"").append(documents.get(i).get_id())
+                    .append("\",\"_score\":1.0,\"_source\":").append(sources.get(i)).append('}');
+        }
+        return json.append("]}}").toString();
+    }
+
+    /**
+     * @return The mapping types of generated top level fields
+     */
+    public static Map<String, String> fieldTypes(List<String> fields) {
+        Map<String, String> types = new LinkedHashMap<>();
+        for (String field : fields) {
+            if (field.startsWith("field_")) {
+                types.put(field, switch (Integer.parseInt(field.substring("field_".length())) % 5) {
+                    case 0 -> "keyword";
+                    case 1 -> "text";
+                    case 2 -> "long";
+                    case 3 -> "boolean";
+                    default -> "date";
+                });
+            }
+        }
+        return types;
+    }
+
+    private static HashMap<String, Object> object(Random random, int width, int depth) {
+        LinkedHashMap<String, Object> object = new LinkedHashMap<>();
+        for (int field = 0; field < width; field++) {
+            object.put("field_" + field, value(random, field));
+        }
+        if (depth > 0) {
+            object.put("nested", object(random, Math.max(width / 2, 1), depth - 1));
+        }
+        return object;
+    }
+
+    private static Object value(Random random, int field) {
+        return switch (field % 5) {
+            case 0 -> WORDS[random.nextInt(WORDS.length)];
+            case 1 -> sentence(random);
+            case 2 -> random.nextInt(1_000_000);
+            case 3 -> random.nextBoolean();
+            default -> "2024-%02d-%02dT%02d:%02d:00Z".formatted(random.nextInt(12) + 1, random.nextInt(28) + 1,
+                    random.nextInt(24), random.nextInt(60));
+        };
+    }
+
+    private static String sentence(Random random) {
+        StringBuilder sentence = new StringBuilder();
+        int words = 4 + random.nextInt(12);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+
+    static Map<String, Object> flatten(Map<String, Object> document) {
+        Map<String, Object> flat = new LinkedHashMap<>();
+        flatten("", document, flat);
+        return flat;
+    }
+
+    private static void flatten(String prefix, Map<String, Object> object, Map<String, Object> flat) {
+        object.forEach((key, value) -> {
+            if (value instanceof Map<?, ?> nested) {
+                flatten(prefix + key + ".", (Map<String, Object>) nested, flat);
+            } else {
+                flat.put(prefix + key, value);
+            }
+        });
+    }
+}
@@ -4,21 +4,39 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.helmuth.shell.model.Document;
 import com.helmuth.shell.service.IndexService;
+import com.helmuth.shell.service.MultiGetService;
+import com.helmuth.shell.service.PageQuery;
+import com.helmuth.shell.service.PagingService;
 import com.helmuth.shell.util.DocumentExporter;
 import org.springframework.shell.command.annotation.Command;
 import org.springframework.shell.command.annotation.Option;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Command(group = "document", description = "Document operations")
 public class DocumentCommand {
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String NEXT_PAGE = "next";
+    private static final String PREVIOUS_PAGE = "previous";
+    private static final String PAGE_DESCRIPTION = "Page number, or " + NEXT_PAGE + " or " + PREVIOUS_PAGE + " to move from the page shown last";
+    private static final String STANDARD_INPUT = "-";
     private final IndexService<Document> indexService;
+    private final PagingService pagingService;
+    private final MultiGetService multiGetService;
 
-    public DocumentCommand(IndexService<Document> indexService) {
+    public DocumentCommand(IndexService<Document> indexService, PagingService pagingService, MultiGetService multiGetService) {
         this.indexService = indexService;
+        this.pagingService = pagingService;
+        this.multiGetService = multiGetService;
     }
 
     @Command(command = "index-document", description = "Index a document")
@@ -47,10 +65,62 @@ public class DocumentCommand {
         }
     }
 
+    @Command(command = "get-documents", description = "Get documents by the IDs listed in a file, one per line")
+    public void getDocuments(String indexName,
+                             @Option(required = true, description = "File of IDs, or - to read them from standard input") String ids,
+                             @Option(defaultValue = "1000", description = "Number of IDs per multi get request") int batchSize,
+                             @Option(defaultValue = "4", description = "Number of multi get requests in flight") int concurrency,
+                             @Option String output,
+                             @Option(defaultValue = "false") Boolean outputHeader,
+                             @Option List<String> includeFields,
+                             @Option List<String> excludeFields,
+                             @Option(description = "File to write the IDs not found to, standard error by default") String missingOutput) {
+        boolean toMissingFile = missingOutput != null && !missingOutput.isEmpty();
+        DocumentExporter exporter = new DocumentExporter(output, outputHeader);
+        BufferedReader reader = null;
+        PrintWriter missingWriter = null;
+        try {
+            // standard input belongs to the shell, so it is read but never closed
+            reader = ids.equals(STANDARD_INPUT)
+                    ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                    : Files.newBufferedReader(Path.of(ids));
+            missingWriter = toMissingFile ? new PrintWriter(Files.newBufferedWriter(Path.of(missingOutput))) : null;
+            Consumer<String> missing = missingWriter != null ? missingWriter::println : System.err::println;
+
+            exporter.initialize();
+            if (exporter.needsMapping()) {
+                exporter.setMapping(indexService.getMappedFields(indexName), includeFields, excludeFields);
+            }
+            MultiGetService.MultiGetResult result = multiGetService.get(indexName, reader, batchSize, concurrency,
+                    includeFields, excludeFields, exporter, missing);
+            System.out.println(result.found() + " of " + result.requested() + " documents found"
+                    + (output != null && !output.isEmpty() ? " and written to " + output : ""));
+            if (result.missing() > 0) {
+                System.err.println(result.missing() + " IDs not found" + (toMissingFile ? ", listed in " + missingOutput : ""));
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to get documents");
+            throw new RuntimeException(e);
+        } finally {
+            try {
+                exporter.close();
+                if (missingWriter != null) {
+                    missingWriter.close();
+                }
+                if (reader != null && !ids.equals(STANDARD_INPUT)) {
+                    reader.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to close export writers");
+                e.printStackTrace();
+            }
+        }
+    }
+
     @Command(command = "list-documents", description = "List documents in an index by page")
     public void listDocuments(String indexName, 
                             @Option(defaultValue = "20") int size, 
-                            @Option(defaultValue = "0") int page,
+                            @Option(defaultValue = "0", description = PAGE_DESCRIPTION) String page,
                             @Option String output, 
                             @Option(defaultValue = "false") Boolean outputHeader,
                             @Option List<String> includeFields,
@@ -58,8 +128,10 @@ public class DocumentCommand {
         DocumentExporter exporter = new DocumentExporter(output, outputHeader);
         try {
             exporter.initialize();
-            List<Document> documents = indexService.getDocuments(indexName, size, page, includeFields, excludeFields);
-            exporter.writeDocuments(documents, true);
+            if (exporter.needsMapping()) {
+                exporter.setMapping(indexService.getMappedFields(indexName), includeFields, excludeFields);
+            }
+            writePage(new PageQuery(indexName, "", size, includeFields, excludeFields), page, exporter);
         } catch (Exception e) {
             System.err.println("Failed to list documents");
             throw new RuntimeException(e);
@@ -77,7 +149,7 @@ public class DocumentCommand {
     public void searchDocuments(String indexName, 
                               @Option(defaultValue = "") String query, 
                               @Option(defaultValue = "20") int size, 
-                              @Option(defaultValue = "0") int page, 
+                              @Option(defaultValue = "0", description = PAGE_DESCRIPTION) String page, 
                               @Option String output, 
                               @Option(defaultValue = "false") Boolean outputHeader,
                               @Option List<String> includeFields,
@@ -85,8 +157,10 @@ public class DocumentCommand {
         DocumentExporter exporter = new DocumentExporter(output, outputHeader);
         try {
             exporter.initialize();
-            List<Document> documents = indexService.searchDocuments(indexName, query, size, page, includeFields, excludeFields);
-            exporter.writeDocuments(documents, true);
+            if (exporter.needsMapping()) {
+                exporter.setMapping(indexService.getMappedFields(indexName), includeFields, excludeFields);
+            }
+            writePage(new PageQuery(indexName, query, size, includeFields, excludeFields), page, exporter);
         } catch (Exception e) {
             System.err.println("Failed to search documents");
             throw new RuntimeException(e);
@@ -100,4 +174,19 @@ public class DocumentCommand {
         }
     }
 
+    private void writePage(PageQuery query, String page, DocumentExporter exporter) throws IOException {
+        PagingService.Page result = switch (page) {
+            case NEXT_PAGE -> pagingService.next(query);
+            case PREVIOUS_PAGE -> pagingService.previous(query);
+            default -> pagingService.page(query, Integer.parseInt(page));
+        };
+        if (result.documents().isEmpty() && result.number() > 0) {
+            System.out.println("No documents on page " + result.number());
+            return;
+        }
+        if (page.equals(NEXT_PAGE) || page.equals(PREVIOUS_PAGE)) {
+            System.out.println("Page " + result.number());
+        }
+        exporter.writeDocuments(result.documents(), true);
+    }
 }
@@ -1,34 +1,68 @@
 package com.helmuth.shell.command;
 
-import co.elastic.clients.elasticsearch.core.ScrollResponse;
-import co.elastic.clients.elasticsearch.core.SearchResponse;
-import co.elastic.clients.elasticsearch.core.search.Hit;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import com.helmuth.shell.elasticsearch.config.ElasticsearchProperties;
+import com.helmuth.shell.metrics.ShellMetrics;
 import com.helmuth.shell.model.Document;
+import com.helmuth.shell.service.AggregationExportService;
+import com.helmuth.shell.service.AggregationRequest;
+import com.helmuth.shell.service.CopyService;
+import com.helmuth.shell.service.CursorRequest;
+import com.helmuth.shell.service.DocumentIngester;
+import com.helmuth.shell.service.ExportOptions;
+import com.helmuth.shell.service.ExportService;
 import com.helmuth.shell.service.IndexService;
+import com.helmuth.shell.service.MultiIndexExportService;
+import com.helmuth.shell.util.CompressionUtil;
+import com.helmuth.shell.util.CsvDocumentReader;
 import com.helmuth.shell.util.DocumentExporter;
+import com.helmuth.shell.util.DocumentReader;
+import com.helmuth.shell.util.JsonDocumentReader;
+import com.helmuth.shell.util.MappingSchema;
+import com.helmuth.shell.util.NdjsonDocumentReader;
+import com.helmuth.shell.util.ParallelCsvReader;
+import com.helmuth.shell.util.SortValues;
 import com.helmuth.shell.util.UserConfirmationUtil;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.RFC4180Parser;
-import com.opencsv.exceptions.CsvValidationException;
 import org.springframework.shell.command.annotation.Command;
 import org.springframework.shell.command.annotation.Option;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Command(group = "index", description = "Index operations")
 public class IndexCommand {
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String SCROLL_CURSOR = "scroll";
+    private static final String PIT_CURSOR = "pit";
+    private static final String CHECKPOINT_EXTENSION = ".checkpoint";
+    // used when resuming without --checkpointInterval; each checkpoint flushes the output, which is not free
+    private static final int DEFAULT_CHECKPOINT_INTERVAL_SECONDS = 30;
+    // mapping types without doc values, which docvalue_fields cannot read
+    private static final Set<String> NO_DOC_VALUE_TYPES = Set.of("text", "match_only_text", "annotated_text",
+            "object", "nested", "binary");
     private final IndexService<Document> indexService;
+    private final ExportService exportService;
+    private final CopyService copyService;
+    private final MultiIndexExportService multiIndexExportService;
+    private final AggregationExportService aggregationExportService;
+    private final ElasticsearchProperties properties;
+    private final ShellMetrics metrics;
 
-    public IndexCommand(IndexService<Document> indexService) {
+    public IndexCommand(IndexService<Document> indexService, ExportService exportService, CopyService copyService,
+                        MultiIndexExportService multiIndexExportService,
+                        AggregationExportService aggregationExportService, ElasticsearchProperties properties,
+                        ShellMetrics metrics) {
         this.indexService = indexService;
+        this.exportService = exportService;
+        this.copyService = copyService;
+        this.multiIndexExportService = multiIndexExportService;
+        this.aggregationExportService = aggregationExportService;
+        this.properties = properties;
+        this.metrics = metrics;
     }
 
     @Command(command = "list", description = "List all indexes")
@@ -103,126 +137,256 @@ public class IndexCommand {
     @Command(command = "scroll", description = "Scroll through documents in an index", group = "index")
     public void scroll(String indexName, @Option(defaultValue = "100") int size, @Option(defaultValue = "10m") String timeout,
                       @Option List<String> includeFields, @Option List<String> excludeFields,
-                      @Option String output, @Option(defaultValue = "false") Boolean outputHeader) throws IOException {
-        DocumentExporter exporter = new DocumentExporter(output, outputHeader);
-        ScrollResponse<Document> scroll = null;
+                      @Option String output, @Option(defaultValue = "false") Boolean outputHeader,
+                      @Option(defaultValue = "1") int slices,
+                      @Option(defaultValue = SCROLL_CURSOR, description = "Cursor to page with: scroll or pit (point in time with search_after)") String cursor,
+                      @Option(description = "Sort values to start a single-slice pit export after, only valid within the point in time they came from; use --checkpointInterval and --resume to continue a stopped export") List<String> searchAfter,
+                      @Option(defaultValue = "2", description = "Number of pages to fetch ahead while writing, 0 to disable") int prefetch,
+                      @Option(defaultValue = "false", description = "Write NDJSON output as bulk index actions") Boolean bulkFormat,
+                      @Option(defaultValue = "0", description = "Seconds between checkpoints of a pit export to <output>.checkpoint, 0 to disable") int checkpointInterval,
+                      @Option(defaultValue = "false", description = "Continue a pit export from <output>.checkpoint, checkpointing every 30 seconds unless an interval is given") Boolean resume,
+                      @Option(description = "Keyword, numeric or date fields to export from doc values instead of _source") List<String> docValueFields) {
+        if (!cursor.equals(SCROLL_CURSOR) && !cursor.equals(PIT_CURSOR)) {
+            System.err.println("Cursor must be either " + SCROLL_CURSOR + " or " + PIT_CURSOR);
+            return;
+        }
+        boolean fromSearchAfter = searchAfter != null && !searchAfter.isEmpty();
+        if (fromSearchAfter && (slices > 1 || !cursor.equals(PIT_CURSOR))) {
+            System.err.println("Only a single-slice " + PIT_CURSOR + " export can be resumed with search after values");
+            return;
+        }
+        boolean checkpointing = checkpointInterval > 0 || resume;
+        if (checkpointing && (!cursor.equals(PIT_CURSOR) || output == null || output.isEmpty())) {
+            System.err.println("Only " + PIT_CURSOR + " exports to a file can be checkpointed and resumed");
+            return;
+        }
+        Path checkpointFile = checkpointing ? Path.of(output + CHECKPOINT_EXTENSION) : null;
+        if (resume && !Files.exists(checkpointFile)) {
+            System.err.println("No checkpoint to resume from: " + checkpointFile);
+            return;
+        }
+        boolean fromDocValues = docValueFields != null && !docValueFields.isEmpty();
+        if (fromDocValues && (includeFields != null && !includeFields.isEmpty() || excludeFields != null && !excludeFields.isEmpty())) {
+            System.err.println("Doc value fields replace _source, so they cannot be combined with include or exclude fields");
+            return;
+        }
+
+        CursorRequest request = new CursorRequest(indexName, size, timeout, includeFields, excludeFields, 0, slices)
+                .withDocValueFields(docValueFields);
+        ExportOptions options = new ExportOptions(cursor.equals(PIT_CURSOR),
+                fromSearchAfter ? SortValues.parse(searchAfter) : null, prefetch,
+                checkpointFile, TimeUnit.SECONDS.toMillis(checkpointInterval > 0 ? checkpointInterval : DEFAULT_CHECKPOINT_INTERVAL_SECONDS), resume);
         try {
-            exporter.initialize();
-            SearchResponse<Document> initScroll = indexService.scrollSearch(indexName, size, timeout, includeFields, excludeFields);
-            List<Document> documents = initScroll.hits().hits().stream()
-                    .map(Hit::source)
-                    .toList();
-            exporter.writeDocuments(documents, true);
-
-            scroll = indexService.scroll(initScroll.scrollId(), timeout);
-            List<Document> hits = scroll.hits().hits().stream()
-                    .map(Hit::source)
-                    .toList();
-            while (!hits.isEmpty()) {
-                exporter.writeDocuments(hits, false);
-                scroll = indexService.scroll(scroll.scrollId(), timeout);
-                hits = scroll.hits().hits().stream()
-                    .map(Hit::source)
-                    .toList();
+            if (fromDocValues) {
+                String invalid = invalidDocValueFields(indexName, docValueFields);
+                if (!invalid.isEmpty()) {
+                    System.err.println("No doc values to export for " + invalid);
+                    return;
+                }
+            }
+            long exported = exportService.export(request, options,
+                    new DocumentExporter(output, outputHeader, bulkFormat ? indexName : null, metrics));
+            if (output != null && !output.isEmpty()) {
+                System.out.println(exported + " documents exported to " + output);
             }
         } catch (Exception e) {
             System.err.println("Failed to scroll through documents");
             throw new RuntimeException(e);
-        } finally {
-            if (scroll != null && scroll.scrollId() != null) {
-                indexService.clearScroll(scroll.scrollId());
+        }
+    }
+
+    @Command(command = "export-indices", description = "Export the indices matching a list of names and patterns, one file per index", group = "index")
+    public void exportIndices(@Option(required = true, description = "Comma separated index names and patterns, e.g. logs-*,-logs-debug-*") String indices,
+                              @Option(required = true, description = "Directory to write <index><format> files and the summary to") String outputDir,
+                              @Option(defaultValue = ".ndjson", description = "File extension deciding the format, e.g. .json, .ndjson.gz or .csv") String format,
+                              @Option(defaultValue = "4", description = "Number of indices exported at a time") int concurrency,
+                              @Option(defaultValue = "1000") int size, @Option(defaultValue = "10m") String timeout,
+                              @Option List<String> includeFields, @Option List<String> excludeFields,
+                              @Option(defaultValue = "false") Boolean outputHeader,
+                              @Option(defaultValue = "1", description = "Number of slices read in parallel per index") int slices,
+                              @Option(defaultValue = PIT_CURSOR, description = "Cursor to page with: scroll or pit (point in time with search_after)") String cursor,
+                              @Option(defaultValue = "2", description = "Number of pages every slice fetches ahead while writing, 0 to disable") int prefetch,
+                              @Option(defaultValue = "false", description = "Write NDJSON output as bulk index actions") Boolean bulkFormat) {
+        if (!cursor.equals(SCROLL_CURSOR) && !cursor.equals(PIT_CURSOR)) {
+            System.err.println("Cursor must be either " + SCROLL_CURSOR + " or " + PIT_CURSOR);
+            return;
+        }
+        try {
+            List<String> indexNames = multiIndexExportService.resolveIndices(indices);
+            if (indexNames.isEmpty()) {
+                System.out.println("No indices match " + indices);
+                return;
+            }
+            System.out.println("Exporting " + indexNames.size() + " indices to " + outputDir);
+
+            long start = System.nanoTime();
+            CursorRequest request = new CursorRequest(null, size, timeout, includeFields, excludeFields, 0, slices);
+            List<MultiIndexExportService.IndexExport> exports = multiIndexExportService.export(indexNames, request,
+                    ExportOptions.of(cursor.equals(PIT_CURSOR), prefetch), Math.max(concurrency, 1), Path.of(outputDir),
+                    format, outputHeader, bulkFormat);
+
+            long documents = 0;
+            long failed = 0;
+            for (MultiIndexExportService.IndexExport export : exports) {
+                documents += export.documents();
+                if (export.failed()) {
+                    failed++;
+                    System.err.println(export.indexName() + ": failed after " + export.millis() + " ms: " + export.error());
+                } else {
+                    System.out.println(export.indexName() + ": " + export.documents() + " documents, "
+                            + export.bytes() + " bytes in " + export.millis() + " ms");
+                }
+            }
+            System.out.println(documents + " documents from " + (exports.size() - failed) + " indices exported in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms, summary written to "
+                    + Path.of(outputDir, MultiIndexExportService.SUMMARY_FILE));
+            if (failed > 0) {
+                System.err.println(failed + " indices failed to export");
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to export indices");
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Command(command = "aggregate-export", description = "Export the buckets of a composite aggregation, one row per group", group = "index")
+    public void aggregateExport(String indexName,
+                                @Option(required = true, description = "Fields to group by, field for terms or field:interval for a date histogram, e.g. host,@timestamp:1d") List<String> groupBy,
+                                @Option(description = "Metrics per group as type:field, with type sum, avg, min, max, cardinality or value_count") List<String> metrics,
+                                @Option(defaultValue = "", description = "Query string selecting the documents to aggregate") String query,
+                                @Option(defaultValue = "1000", description = "Number of buckets per request") int size,
+                                @Option String output, @Option(defaultValue = "false") Boolean outputHeader) {
+        AggregationRequest request;
+        try {
+            request = new AggregationRequest(indexName, query,
+                    groupBy.stream().map(AggregationRequest.Group::parse).toList(),
+                    metrics == null ? List.of() : metrics.stream().map(AggregationRequest.Metric::parse).toList(),
+                    size);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        try {
+            long buckets = aggregationExportService.export(request, new DocumentExporter(output, outputHeader, null, this.metrics));
+            if (output != null && !output.isEmpty()) {
+                System.out.println(buckets + " groups exported to " + output);
             }
-            try {
-                exporter.close();
-            } catch (IOException e) {
-                System.err.println("Failed to close export writers");
-                e.printStackTrace();
+        } catch (Exception e) {
+            System.err.println("Failed to export aggregation");
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Command(command = "copy", description = "Copy an index to another index or cluster without an intermediate file", group = "index")
+    public void copy(String indexName,
+                     @Option(description = "Index to copy to, the source index name by default") String targetIndex,
+                     @Option(description = "Cluster to copy to, elasticsearch.target-host or the source cluster by default") String targetHost,
+                     @Option(defaultValue = "1000") int size, @Option(defaultValue = "10m") String timeout,
+                     @Option List<String> includeFields, @Option List<String> excludeFields,
+                     @Option(defaultValue = "1", description = "Number of slices read in parallel") int slices,
+                     @Option(defaultValue = "2", description = "Number of pages every slice fetches ahead while indexing, 0 to disable") int prefetch,
+                     @Option(defaultValue = "false", description = "Create the target index with the settings of the source index") Boolean copySettings,
+                     @Option(defaultValue = "false", description = "Create the target index with the mappings of the source index") Boolean copyMappings) {
+        String target = targetIndex != null && !targetIndex.isEmpty() ? targetIndex : indexName;
+        String host = targetHost != null && !targetHost.isEmpty() ? targetHost : properties.getTargetHost();
+        try {
+            CursorRequest request = new CursorRequest(indexName, size, timeout, includeFields, excludeFields, 0, slices);
+            CopyService.CopyResult result = copyService.copy(request, host, target, copySettings, copyMappings, prefetch);
+            System.out.println(result.copied() + " documents copied to " + target
+                    + (host != null && !host.isBlank() ? " on " + host : ""));
+            if (result.failed() > 0) {
+                System.err.println(result.failed() + " documents failed to copy, first failure: " + result.firstFailure());
             }
+        } catch (Exception e) {
+            System.err.println("Failed to copy index");
+            throw new RuntimeException(e);
         }
     }
 
     @Command(command = "import", description = "Import documents into an index")
-    public void importDocuments(String indexName, @Option(required = true) String file) {
+    public void importDocuments(String indexName, @Option(required = true) String file,
+                                @Option(defaultValue = "1000", description = "Number of documents read from the file at a time") int batchSize,
+                                @Option(defaultValue = "0", description = "Threads parsing an uncompressed CSV file, 0 for one per core") int threads,
+                                @Option(description = "Mapping or field type JSON file to convert CSV cells with, the index mapping by default") String schema) {
         try {
-            String fileFormat = file.substring(file.lastIndexOf("."));
-            if (!fileFormat.equals(".json") && !fileFormat.equals(".csv")) {
-                System.err.println("Only JSON and CSV files are supported at the moment");
+            String uncompressed = CompressionUtil.stripCompressionExtension(file);
+            String fileFormat = uncompressed.substring(uncompressed.lastIndexOf("."));
+            if (!fileFormat.equals(".json") && !fileFormat.equals(".ndjson") && !fileFormat.equals(".csv")) {
+                System.err.println("Only JSON, NDJSON and CSV files, optionally gzip compressed, are supported at the moment");
                 return;
             }
 
-            File fileToImport = new File(file);
+            if (fileFormat.equals(".csv")) {
+                System.out.println("The first row will be used as the header row");
+                if (!UserConfirmationUtil.confirm("Do you want to continue?")) {
+                    System.out.println("Import cancelled");
+                    return;
+                }
+            }
 
-            List<Document> documents = switch (fileFormat) {
-                case ".json" -> documents = readJson(fileToImport);
-                case ".csv" -> documents = readCsv(fileToImport);
-                default -> new ArrayList<>();
-            };
+            File fileToImport = new File(file);
+            Map<String, String> fieldTypes = fileFormat.equals(".csv") ? csvFieldTypes(indexName, schema) : Map.of();
+            DocumentIngester ingester = indexService.openIngester(indexName);
+            int parseThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+            try (ingester; DocumentReader reader = openReader(fileToImport, fileFormat, batchSize, parseThreads, fieldTypes)) {
+                List<Document> documents = reader.nextBatch();
+                while (!documents.isEmpty()) {
+                    ingester.addAll(documents);
+                    documents = reader.nextBatch();
+                }
+            }
 
-            if (documents.isEmpty()) {
+            if (ingester.getIndexed() == 0 && ingester.getFailed() == 0) {
                 System.out.println("No documents to import");
                 return;
             }
-
-            indexService.indexDocuments(indexName, documents);
-            System.out.println("Documents imported successfully");
+            System.out.println(ingester.getIndexed() + " documents imported successfully");
+            if (ingester.getFailed() > 0) {
+                System.err.println(ingester.getFailed() + " documents failed to import, first failure: " + ingester.getFirstFailure());
+            }
         } catch (Exception e) {
             System.err.println("Failed to import documents");
             throw new RuntimeException(e);
         }
     }
 
-    private static List<Document> readJson(File fileToImport) throws IOException {
-        try {
-            return objectMapper.readValue(fileToImport, new TypeReference<List<Document>>() {
-            });
-        } catch (JsonProcessingException e) {
-            return Collections.emptyList();
-        }
+    /**
+     * @return The fields, other than patterns, that are not mapped or whose type has no doc values, comma separated
+     */
+    private String invalidDocValueFields(String indexName, List<String> docValueFields) throws IOException {
+        Map<String, String> mappedFields = indexService.getMappedFields(indexName, true);
+        return docValueFields.stream()
+                .filter(field -> !field.contains("*"))
+                .filter(field -> !mappedFields.containsKey(field) || NO_DOC_VALUE_TYPES.contains(mappedFields.get(field)))
+                .map(field -> field + (mappedFields.containsKey(field) ? " (" + mappedFields.get(field) + ")" : " (not mapped)"))
+                .collect(Collectors.joining(", "));
     }
 
-    private List<Document> readCsv(File fileToImport) {
-        System.out.println("The first row will be used as the header row");
-        if (!UserConfirmationUtil.confirm("Do you want to continue?")) {
-            System.out.println("Import cancelled");
-            return Collections.emptyList();
-        }
-
-        List<Document> documents = new ArrayList<>();
-        RFC4180Parser parser = new RFC4180Parser();
-
-        try (CSVReader reader = new CSVReaderBuilder(new FileReader(fileToImport))
-                .withCSVParser(parser)
-                .build()) {
-
-            String[] headers = reader.readNext();
-
-            String[] row;
-            while ((row = reader.readNext()) != null) {
-                HashMap<String, Object> fields = new HashMap<>();
-
-                for (int i = 0; i < row.length && i < headers.length; i++) {
-                    String value = row[i].trim();
-
-                    // Handle JSON objects
-                    if (value.startsWith("{")) {
-                        fields.put(headers[i], objectMapper.readValue(value, Map.class));
-                    }
-                    // Handle JSON arrays
-                    else if (value.startsWith("[")) {
-                        fields.put(headers[i], objectMapper.readValue(value, List.class));
-                    }
-                    // Handle regular strings
-                    else {
-                        fields.put(headers[i], value);
-                    }
-                }
-
-                documents.add(new Document(null, fields));
-            }
-        } catch (CsvValidationException | IOException e) {
-            return Collections.emptyList();
+    /**
+     * @return The types to convert CSV cells to, from the schema file if given, else from the mapping of the
+     *         target index if it exists
+     */
+    private Map<String, String> csvFieldTypes(String indexName, String schema) throws IOException {
+        if (schema != null && !schema.isEmpty()) {
+            return MappingSchema.read(new File(schema));
         }
+        try {
+            return indexService.getMappedFields(indexName);
+        } catch (ElasticsearchException e) {
+            System.out.println("No mapping found for " + indexName + ", CSV cells are imported as text or JSON");
+            return Map.of();
+        }
+    }
 
-        return documents;
+    private static DocumentReader openReader(File file, String fileFormat, int batchSize, int threads,
+                                             Map<String, String> fieldTypes) throws IOException {
+        return switch (fileFormat) {
+            case ".json" -> new JsonDocumentReader(file, batchSize);
+            case ".ndjson" -> new NdjsonDocumentReader(file, batchSize);
+            // compressed files cannot be memory-mapped and split, so they are parsed on one thread
+            default -> CompressionUtil.isGzip(file.getName()) || threads == 1
+                    ? new CsvDocumentReader(file, batchSize, fieldTypes)
+                    : new ParallelCsvReader(file, batchSize, threads, fieldTypes);
+        };
     }
 }
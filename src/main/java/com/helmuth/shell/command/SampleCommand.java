@@ -1,7 +1,6 @@
 package com.helmuth.shell.command;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.elasticsearch.core.BulkRequest;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.helmuth.shell.model.Document;
@@ -48,12 +47,7 @@ public class SampleCommand {
             return;
         }
 
-        BulkRequest.Builder bulkRequest = new BulkRequest.Builder();
-        for (Document document : sampleDocuments) {
-            bulkRequest.operations(op -> op.index(i -> i.index(indexName).document(document)));
-        }
-
-        client.bulk(bulkRequest.build());
+        indexService.indexDocuments(indexName, sampleDocuments);
         System.out.println("Index created and documents inserted successfully");
     }
 
@@ -0,0 +1,27 @@
+package com.helmuth.shell.command;
+
+import com.helmuth.shell.metrics.MetricsReporter;
+import org.springframework.shell.command.annotation.Command;
+import org.springframework.shell.command.annotation.Option;
+
+@Command(group = "stats", description = "Metrics of requests, bulk indexing and exports")
+public class StatsCommand {
+    private final MetricsReporter reporter;
+
+    public StatsCommand(MetricsReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    @Command(command = "stats", description = "Show metrics, with rates since the previous stats call")
+    public void stats(@Option(defaultValue = "-1", description = "Seconds between periodic dumps while commands run, 0 to stop them") int dumpInterval,
+                      @Option(description = "File to append periodic dumps to as JSON lines, the log by default") String dumpFile) {
+        if (dumpInterval >= 0) {
+            reporter.startDumps(dumpInterval, dumpFile);
+            System.out.println(dumpInterval > 0
+                    ? "Dumping metrics every " + dumpInterval + "s to " + (dumpFile != null ? dumpFile : "the log")
+                    : "Stopped dumping metrics");
+            return;
+        }
+        System.out.println(reporter.format());
+    }
+}
@@ -4,7 +4,6 @@ import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
 import co.elastic.clients.transport.rest_client.RestClientTransport;
-import org.apache.http.HttpHost;
 import org.elasticsearch.client.RestClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -13,14 +12,21 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class ElasticSearchConfiguration {
     private final ElasticsearchProperties properties;
+    private final ElasticsearchClientFactory clientFactory;
 
-    public ElasticSearchConfiguration(ElasticsearchProperties properties) {
+    public ElasticSearchConfiguration(ElasticsearchProperties properties, ElasticsearchClientFactory clientFactory) {
         this.properties = properties;
+        this.clientFactory = clientFactory;
     }
 
     @Bean
-    public RestClient restClient() {
-        return RestClient.builder(HttpHost.create(properties.getHost())).build();
+    public ElasticsearchConnection elasticsearchConnection() {
+        return clientFactory.connect(properties.getHost());
+    }
+    // closed by the connection, after its sniffer
+    @Bean(destroyMethod = "")
+    public RestClient restClient(ElasticsearchConnection connection) {
+        return connection.restClient();
     }
     @Bean
     public ElasticsearchTransport elasticsearchTransport(RestClient restClient) {
@@ -0,0 +1,91 @@
+package com.helmuth.shell.elasticsearch.config;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import org.apache.http.HttpHost;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Creates clients for a cluster, so a second cluster, e.g. the target of a copy, is connected to the same way
+ * as the configured one. Requests are spread round robin over the given nodes, or over the nodes found by
+ * sniffing if enabled.
+ */
+@Component
+public class ElasticsearchClientFactory {
+    private final ElasticsearchProperties properties;
+
+    public ElasticsearchClientFactory(ElasticsearchProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @param hosts One node URL or a comma separated list of node URLs of the cluster
+     * @return The connection, to be closed when done
+     */
+    public ElasticsearchConnection connect(String hosts) {
+        HttpHost[] nodes = Arrays.stream(hosts.split(","))
+                .map(String::trim)
+                .filter(host -> !host.isEmpty())
+                .map(HttpHost::create)
+                .toArray(HttpHost[]::new);
+        if (nodes.length == 0) {
+            throw new IllegalArgumentException("No Elasticsearch host configured");
+        }
+
+        ElasticsearchProperties.Transport transport = properties.getTransport();
+        RestClientBuilder builder = RestClient.builder(nodes)
+                .setCompressionEnabled(transport.isCompression())
+                .setRequestConfigCallback(config -> {
+                    if (properties.getConnectionTimeout() > 0) {
+                        config.setConnectTimeout(properties.getConnectionTimeout());
+                    }
+                    if (properties.getSocketTimeout() > 0) {
+                        config.setSocketTimeout(properties.getSocketTimeout());
+                    }
+                    return config;
+                })
+                .setHttpClientConfigCallback(client -> {
+                    client.setMaxConnPerRoute(transport.getMaxConnectionsPerRoute())
+                            .setMaxConnTotal(transport.getMaxConnectionsTotal())
+                            .setDefaultIOReactorConfig(IOReactorConfig.custom()
+                                    .setIoThreadCount(transport.getIoThreads())
+                                    .setSoKeepAlive(true)
+                                    .build());
+                    if (transport.getKeepAliveMillis() > 0) {
+                        // idle connections are reused for this long instead of being reopened for every request
+                        client.setKeepAliveStrategy((response, context) -> transport.getKeepAliveMillis());
+                    }
+                    return client;
+                });
+
+        if (!transport.isSniff()) {
+            return new ElasticsearchConnection(builder.build(), null);
+        }
+        SniffOnFailureListener failureListener = new SniffOnFailureListener();
+        RestClient restClient = builder.setFailureListener(failureListener).build();
+        ElasticsearchNodesSniffer.Scheme scheme = "https".equalsIgnoreCase(nodes[0].getSchemeName())
+                ? ElasticsearchNodesSniffer.Scheme.HTTPS
+                : ElasticsearchNodesSniffer.Scheme.HTTP;
+        Sniffer sniffer = Sniffer.builder(restClient)
+                .setSniffIntervalMillis(transport.getSniffIntervalMillis())
+                .setSniffAfterFailureDelayMillis(transport.getSniffAfterFailureDelayMillis())
+                .setNodesSniffer(new ElasticsearchNodesSniffer(restClient,
+                        ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT, scheme))
+                .build();
+        failureListener.setSniffer(sniffer);
+        return new ElasticsearchConnection(restClient, sniffer);
+    }
+
+    public ElasticsearchClient createClient(RestClient restClient) {
+        return new ElasticsearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper()));
+    }
+}
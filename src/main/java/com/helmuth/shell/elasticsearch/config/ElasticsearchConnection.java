@@ -0,0 +1,24 @@
+package com.helmuth.shell.elasticsearch.config;
+
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.sniff.Sniffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The low level client of a cluster together with the sniffer that keeps its node list current, if sniffing
+ * is enabled. Closing stops the sniffer before the client it uses.
+ * @param restClient The client
+ * @param sniffer The sniffer, or null if sniffing is disabled
+ */
+public record ElasticsearchConnection(RestClient restClient, Sniffer sniffer) implements Closeable {
+
+    @Override
+    public void close() throws IOException {
+        if (sniffer != null) {
+            sniffer.close();
+        }
+        restClient.close();
+    }
+}
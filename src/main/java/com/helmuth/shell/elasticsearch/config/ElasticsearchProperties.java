@@ -7,9 +7,17 @@ import org.springframework.stereotype.Component;
 @Component
 public class ElasticsearchProperties {
     private String host;
+    private String targetHost;
     private int connectionTimeout;
     private int socketTimeout;
+    private final Bulk bulk = new Bulk();
+    private final Transport transport = new Transport();
+    private final Paging paging = new Paging();
+    private final Cache cache = new Cache();
 
+    /**
+     * @return One node URL, or a comma separated list of node URLs that requests are spread across
+     */
     public String getHost() {
         return host;
     }
@@ -18,6 +26,17 @@ public class ElasticsearchProperties {
         this.host = host;
     }
 
+    /**
+     * @return The cluster to copy indexes to if a copy names no other, or null to copy within the cluster
+     */
+    public String getTargetHost() {
+        return targetHost;
+    }
+
+    public void setTargetHost(String targetHost) {
+        this.targetHost = targetHost;
+    }
+
     public int getConnectionTimeout() {
         return connectionTimeout;
     }
@@ -33,4 +52,194 @@ public class ElasticsearchProperties {
     public void setSocketTimeout(int socketTimeout) {
         this.socketTimeout = socketTimeout;
     }
+
+    public Bulk getBulk() {
+        return bulk;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public Paging getPaging() {
+        return paging;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public static class Bulk {
+        private int maxOperations = 1000;
+        private long maxSizeBytes = 5 * 1024 * 1024;
+        private int maxConcurrentRequests = 4;
+        private int maxRetries = 5;
+        private long initialBackoffMillis = 200;
+
+        public int getMaxOperations() {
+            return maxOperations;
+        }
+
+        public void setMaxOperations(int maxOperations) {
+            this.maxOperations = maxOperations;
+        }
+
+        public long getMaxSizeBytes() {
+            return maxSizeBytes;
+        }
+
+        public void setMaxSizeBytes(long maxSizeBytes) {
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        public int getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public long getInitialBackoffMillis() {
+            return initialBackoffMillis;
+        }
+
+        public void setInitialBackoffMillis(long initialBackoffMillis) {
+            this.initialBackoffMillis = initialBackoffMillis;
+        }
+    }
+
+    /**
+     * Settings of the HTTP connections to a cluster. Timeouts of 0 keep the client defaults.
+     */
+    public static class Transport {
+        private int maxConnectionsPerRoute = 32;
+        private int maxConnectionsTotal = 128;
+        private int ioThreads = Runtime.getRuntime().availableProcessors();
+        private long keepAliveMillis = 60_000;
+        private boolean compression = false;
+        private boolean sniff = false;
+        private int sniffIntervalMillis = 5 * 60 * 1000;
+        private int sniffAfterFailureDelayMillis = 60 * 1000;
+
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        public int getMaxConnectionsTotal() {
+            return maxConnectionsTotal;
+        }
+
+        public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+            this.maxConnectionsTotal = maxConnectionsTotal;
+        }
+
+        public int getIoThreads() {
+            return ioThreads;
+        }
+
+        public void setIoThreads(int ioThreads) {
+            this.ioThreads = ioThreads;
+        }
+
+        public long getKeepAliveMillis() {
+            return keepAliveMillis;
+        }
+
+        public void setKeepAliveMillis(long keepAliveMillis) {
+            this.keepAliveMillis = keepAliveMillis;
+        }
+
+        public boolean isCompression() {
+            return compression;
+        }
+
+        public void setCompression(boolean compression) {
+            this.compression = compression;
+        }
+
+        public boolean isSniff() {
+            return sniff;
+        }
+
+        public void setSniff(boolean sniff) {
+            this.sniff = sniff;
+        }
+
+        public int getSniffIntervalMillis() {
+            return sniffIntervalMillis;
+        }
+
+        public void setSniffIntervalMillis(int sniffIntervalMillis) {
+            this.sniffIntervalMillis = sniffIntervalMillis;
+        }
+
+        public int getSniffAfterFailureDelayMillis() {
+            return sniffAfterFailureDelayMillis;
+        }
+
+        public void setSniffAfterFailureDelayMillis(int sniffAfterFailureDelayMillis) {
+            this.sniffAfterFailureDelayMillis = sniffAfterFailureDelayMillis;
+        }
+    }
+
+    /**
+     * Settings of the cursors that list-documents and search-documents keep between pages.
+     */
+    public static class Paging {
+        private int idleTimeoutSeconds = 300;
+        private int maxCursors = 16;
+
+        public int getIdleTimeoutSeconds() {
+            return idleTimeoutSeconds;
+        }
+
+        public void setIdleTimeoutSeconds(int idleTimeoutSeconds) {
+            this.idleTimeoutSeconds = idleTimeoutSeconds;
+        }
+
+        public int getMaxCursors() {
+            return maxCursors;
+        }
+
+        public void setMaxCursors(int maxCursors) {
+            this.maxCursors = maxCursors;
+        }
+    }
+
+    /**
+     * Settings of the caches of lookups, searched pages and index definitions. Any write by the shell empties them.
+     */
+    public static class Cache {
+        private int maxEntries = 1000;
+        private int ttlSeconds = 60;
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public int getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(int ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+    }
 }
@@ -0,0 +1,19 @@
+package com.helmuth.shell.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The shell has no actuator, so it defines the only meter registry itself, kept in memory for stats and the
+ * periodic dump.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+}
@@ -0,0 +1,33 @@
+package com.helmuth.shell.metrics;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@ConfigurationProperties(prefix = "metrics")
+@Component
+public class MetricsProperties {
+    private int dumpIntervalSeconds;
+    private String dumpFile;
+
+    /**
+     * @return The seconds between metric dumps, 0 to not dump
+     */
+    public int getDumpIntervalSeconds() {
+        return dumpIntervalSeconds;
+    }
+
+    public void setDumpIntervalSeconds(int dumpIntervalSeconds) {
+        this.dumpIntervalSeconds = dumpIntervalSeconds;
+    }
+
+    /**
+     * @return The file to append dumps to as JSON lines, or null to write them to the log
+     */
+    public String getDumpFile() {
+        return dumpFile;
+    }
+
+    public void setDumpFile(String dumpFile) {
+        this.dumpFile = dumpFile;
+    }
+}
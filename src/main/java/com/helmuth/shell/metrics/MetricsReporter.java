@@ -0,0 +1,177 @@
+package com.helmuth.shell.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Reports the meters of {@link ShellMetrics}, on demand for the stats command and periodically to the log or
+ * a JSON lines file while long commands run. Counters are reported with their rate per second since the
+ * previous report of the same kind.
+ */
+@Component
+public class MetricsReporter implements ApplicationListener<ApplicationStartedEvent>, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(MetricsReporter.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ShellMetrics metrics;
+    private final MetricsProperties properties;
+    private final RateWindow statsWindow = new RateWindow();
+    private final RateWindow dumpWindow = new RateWindow();
+    private ScheduledExecutorService dumper;
+
+    public MetricsReporter(ShellMetrics metrics, MetricsProperties properties) {
+        this.metrics = metrics;
+        this.properties = properties;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationStartedEvent event) {
+        startDumps(properties.getDumpIntervalSeconds(), properties.getDumpFile());
+    }
+
+    @Override
+    public void destroy() {
+        stopDumps();
+    }
+
+    /**
+     * Dumps the metrics every interval, replacing dumps started before.
+     * @param intervalSeconds The seconds between dumps, 0 to stop dumping
+     * @param file The file to append JSON lines to, or null to write to the log
+     */
+    public synchronized void startDumps(int intervalSeconds, String file) {
+        stopDumps();
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(file), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopDumps() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    private void dump(String file) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("timestamp", Instant.now().toString());
+        snapshot.putAll(snapshot(dumpWindow));
+        try {
+            String json = objectMapper.writeValueAsString(snapshot);
+            if (file == null || file.isEmpty()) {
+                log.info("metrics {}", json);
+            } else {
+                Files.writeString(Path.of(file), json + System.lineSeparator(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to dump metrics", e);
+        }
+    }
+
+    /**
+     * @return The metrics as text lines, with counter rates since the previous call
+     */
+    public String format() {
+        return snapshot(statsWindow).entrySet().stream()
+                .map(entry -> entry.getKey() + ": " + entry.getValue())
+                .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    private Map<String, Object> snapshot(RateWindow window) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        Map<String, Double> counts = new HashMap<>();
+        metrics.getRegistry().getMeters().stream()
+                .sorted(Comparator.comparing(MetricsReporter::name))
+                .forEach(meter -> {
+                    String name = name(meter);
+                    switch (meter) {
+                        case Counter counter -> {
+                            counts.put(name, counter.count());
+                            snapshot.put(name, Map.of("count", counter.count(), "perSecond", window.rate(name, counter.count())));
+                        }
+                        case Timer timer -> snapshot.put(name, timerSummary(timer.takeSnapshot()));
+                        case Gauge gauge -> snapshot.put(name, gauge.value());
+                        default -> {
+                        }
+                    }
+                });
+        window.advance(counts);
+        return snapshot;
+    }
+
+    private static Map<String, Object> timerSummary(HistogramSnapshot snapshot) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", snapshot.count());
+        summary.put("meanMs", round(snapshot.mean(TimeUnit.MILLISECONDS)));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            summary.put("p" + Math.round(percentile.percentile() * 100) + "Ms", round(percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        summary.put("maxMs", round(snapshot.max(TimeUnit.MILLISECONDS)));
+        summary.put("totalMs", round(snapshot.total(TimeUnit.MILLISECONDS)));
+        return summary;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static String name(Meter meter) {
+        String tags = meter.getId().getTags().stream()
+                .map(Tag::getValue)
+                .collect(Collectors.joining("."));
+        return tags.isEmpty() ? meter.getId().getName() : meter.getId().getName() + "." + tags;
+    }
+
+    /**
+     * The counts at the previous report, to turn totals into rates.
+     */
+    private static class RateWindow {
+        private Map<String, Double> previousCounts = Map.of();
+        private long previousNanos = System.nanoTime();
+
+        synchronized double rate(String name, double count) {
+            double seconds = (System.nanoTime() - previousNanos) / 1e9;
+            return seconds > 0 ? round((count - previousCounts.getOrDefault(name, 0.0)) / seconds) : 0;
+        }
+
+        synchronized void advance(Map<String, Double> counts) {
+            previousCounts = counts;
+            previousNanos = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.helmuth.shell.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The meters of the shell, grouped so a slow export or import can be attributed to the cluster, the network
+ * or the disk. The server side took of a request against its client round trip tells cluster from network
+ * time, and the time spent waiting for pages against the time spent writing them tells reading from writing.
+ */
+@Component
+public class ShellMetrics {
+    /**
+     * Metrics that record nothing, for code running outside the application context.
+     */
+    public static final ShellMetrics NOOP = new ShellMetrics(new CompositeMeterRegistry());
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry registry;
+    private final Timer searchRoundTrip;
+    private final Timer searchTook;
+    private final Counter documentsRead;
+    private final Timer multiGetRoundTrip;
+    private final Timer bulkRoundTrip;
+    private final Timer bulkTook;
+    private final Counter bulkIndexed;
+    private final Counter bulkFailed;
+    private final Counter bulkRetried;
+    private final Timer bulkAddWait;
+    private final AtomicLong bulkPending = new AtomicLong();
+    private final Counter documentsWritten;
+    private final Counter bytesWritten;
+    private final Timer writeTime;
+    private final Timer fetchWait;
+    private final AtomicLong prefetchQueued = new AtomicLong();
+
+    public ShellMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.searchRoundTrip = latency("es.search.roundtrip", "Client round trip of search and scroll requests");
+        this.searchTook = latency("es.search.took", "Server side took of search and scroll requests");
+        this.documentsRead = Counter.builder("es.documents.read").description("Hits read from the cluster").register(registry);
+        this.multiGetRoundTrip = latency("es.mget.roundtrip", "Client round trip of multi get requests");
+        this.bulkRoundTrip = latency("es.bulk.roundtrip", "Client round trip of bulk requests");
+        this.bulkTook = latency("es.bulk.took", "Server side took of bulk requests");
+        this.bulkIndexed = bulkItems("indexed");
+        this.bulkFailed = bulkItems("failed");
+        this.bulkRetried = bulkItems("retried");
+        this.bulkAddWait = latency("es.bulk.add.wait", "Time producers were blocked on full bulk request slots");
+        this.documentsWritten = Counter.builder("export.documents").description("Documents written to the output").register(registry);
+        this.bytesWritten = Counter.builder("export.bytes").baseUnit("bytes").description("Uncompressed bytes written to the output").register(registry);
+        this.writeTime = latency("export.write", "Time spent writing pages to the output");
+        this.fetchWait = latency("export.fetch.wait", "Time writers waited for the next page");
+        registry.gauge("es.bulk.pending", bulkPending);
+        registry.gauge("export.prefetch.queued", prefetchQueued);
+    }
+
+    private Timer latency(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter bulkItems(String outcome) {
+        return Counter.builder("es.bulk.items").tag("outcome", outcome).description("Bulk items by outcome").register(registry);
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @param startNanos When the request was sent, from {@link System#nanoTime()}
+     * @param tookMillis The took reported by the cluster
+     * @param hits The number of hits returned
+     */
+    public void searched(long startNanos, long tookMillis, int hits) {
+        searchRoundTrip.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        searchTook.record(tookMillis, TimeUnit.MILLISECONDS);
+        documentsRead.increment(hits);
+    }
+
+    /**
+     * @param startNanos When the request was sent, from {@link System#nanoTime()}
+     * @param found The number of documents found
+     */
+    public void multiGot(long startNanos, int found) {
+        multiGetRoundTrip.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        documentsRead.increment(found);
+    }
+
+    public void bulkCompleted(long startNanos, long tookMillis) {
+        bulkRoundTrip.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        bulkTook.record(tookMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void bulkItemIndexed() {
+        bulkIndexed.increment();
+    }
+
+    public void bulkItemFailed() {
+        bulkFailed.increment();
+    }
+
+    public void bulkItemRetried() {
+        bulkRetried.increment();
+    }
+
+    public void bulkAddBlocked(long startNanos) {
+        bulkAddWait.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void bulkPending(long delta) {
+        bulkPending.addAndGet(delta);
+    }
+
+    public void written(long startNanos, int documents) {
+        writeTime.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        documentsWritten.increment(documents);
+    }
+
+    public void bytesWritten(long bytes) {
+        bytesWritten.increment(bytes);
+    }
+
+    public void fetchWaited(long startNanos) {
+        fetchWait.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void prefetchQueued(long delta) {
+        prefetchQueued.addAndGet(delta);
+    }
+
+    /**
+     * @param cache The name of the cache looked up
+     * @param hit Whether the result was cached
+     */
+    public void cacheLookup(String cache, boolean hit) {
+        Counter.builder("cache.lookups")
+                .tag("cache", cache)
+                .tag("result", hit ? "hit" : "miss")
+                .description("Cached result lookups by outcome")
+                .register(registry)
+                .increment();
+    }
+}
@@ -1,16 +1,123 @@
 package com.helmuth.shell.model;
 
-import java.util.HashMap;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A document as a map of its _source fields. Instead of a hash table per document, the keys of a deserialized
+ * document live in a {@link DocumentSchema} shared with the other documents of a page and the values in a flat
+ * array. Documents built with put get a schema of their own that grows in place. Nested objects
+ * and arrays are kept as their JSON text when deserialized and only parsed when read, so exporting them as JSON
+ * never builds them at all.
+ */
+@JsonDeserialize(using = Document.Deserializer.class)
+@JsonSerialize(using = Document.Serializer.class)
+public class Document extends AbstractMap<String, Object> {
+    private static final Object[] NO_VALUES = new Object[0];
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ThreadLocal<DocumentSchema.Cache> schemas = ThreadLocal.withInitial(DocumentSchema.Cache::new);
 
-public class Document extends HashMap<String, Object> {
     public String _id;
+    private DocumentSchema schema = DocumentSchema.EMPTY;
+    private Object[] values = NO_VALUES;
 
     public Document() {
     }
 
-    public Document(String _id, HashMap<String, Object> map) {
-        super(map);
+    public Document(String _id, Map<String, ?> map) {
         this._id = _id;
+        if (map != null) {
+            putAll(map);
+        }
+    }
+
+    /**
+     * Builds a document from the values of the keys of a schema, leaving out keys whose value is null. A document
+     * with every value present takes the schema and the array as they are, so rows of a file share one schema.
+     * @param schema The keys
+     * @param values The value of each key, in the order of the keys, or null to leave the key out
+     */
+    public static Document of(DocumentSchema schema, Object[] values) {
+        int present = 0;
+        for (int slot = 0; slot < schema.size(); slot++) {
+            if (values[slot] != null) {
+                present++;
+            }
+        }
+        if (present == schema.size()) {
+            Document document = new Document();
+            document.schema = schema;
+            document.values = values;
+            return document;
+        }
+        String[] presentKeys = new String[present];
+        Object[] presentValues = new Object[present];
+        int count = 0;
+        for (int slot = 0; slot < schema.size(); slot++) {
+            if (values[slot] != null) {
+                presentKeys[count] = schema.key(slot);
+                presentValues[count++] = values[slot];
+            }
+        }
+        return of(presentKeys, presentValues, count);
+    }
+
+    /**
+     * @return A document of the first count keys and values, sharing its schema with the documents of the same
+     *         keys built recently on this thread
+     */
+    private static Document of(String[] keys, Object[] values, int count) {
+        Document document = new Document();
+        DocumentSchema schema = schemas.get().get(keys, count);
+        if (schema != null) {
+            document.schema = schema;
+            document.values = values.length == count ? values : Arrays.copyOf(values, count);
+        } else {
+            // a repeated key, the last value wins as in a map
+            for (int i = 0; i < count; i++) {
+                document.put(keys[i], values[i]);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * @return A document with the same _id and fields that can be changed without changing this one. Nested values
+     *         still held as JSON text are parsed by each document on its own, nested values parsed before are shared
+     */
+    public Document copy() {
+        Document copy = new Document();
+        copy._id = _id;
+        if (schema.isShared()) {
+            copy.schema = schema;
+            copy.values = Arrays.copyOf(values, schema.size());
+        } else {
+            for (int slot = 0; slot < schema.size(); slot++) {
+                copy.append(schema.key(slot), values[slot]);
+            }
+        }
+        return copy;
     }
 
     public String get_id() {
@@ -21,8 +128,235 @@ public class Document extends HashMap<String, Object> {
         this._id = _id;
     }
 
+    @Override
+    public int size() {
+        return schema.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return schema.slot(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int slot = schema.slot(key);
+        return slot >= 0 ? value(slot) : null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int slot = schema.slot(key);
+        if (slot >= 0) {
+            Object previous = value(slot);
+            values[slot] = value;
+            return previous;
+        }
+        append(key, value);
+        return null;
+    }
+
+    private void append(String key, Object value) {
+        schema = schema.with(key);
+        if (values.length < schema.size()) {
+            values = Arrays.copyOf(values, Math.max(schema.size(), values.length * 2));
+        }
+        values[schema.size() - 1] = value;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int slot = schema.slot(key);
+        if (slot < 0) {
+            return null;
+        }
+        Object removed = value(slot);
+        DocumentSchema previousSchema = schema;
+        Object[] previousValues = values;
+        clear();
+        for (int i = 0; i < previousSchema.size(); i++) {
+            if (i != slot) {
+                append(previousSchema.key(i), previousValues[i]);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        schema = DocumentSchema.EMPTY;
+        values = NO_VALUES;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int slot;
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < schema.size();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return new SlotEntry(slot++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return schema.size();
+            }
+        };
+    }
+
+    /**
+     * @return The value at a position, parsing it first if it is still JSON text
+     */
+    private Object value(int slot) {
+        Object value = values[slot];
+        if (value instanceof UnparsedJson unparsed) {
+            try {
+                value = objectMapper.readValue(unparsed.json(), Object.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            values[slot] = value;
+        }
+        return value;
+    }
+
     @Override
     public String toString() {
         return "{_id='" + _id + '\'' + '}' + " " + super.toString();
     }
+
+    private final class SlotEntry implements Entry<String, Object> {
+        private final int slot;
+
+        private SlotEntry(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public String getKey() {
+            return schema.key(slot);
+        }
+
+        @Override
+        public Object getValue() {
+            return value(slot);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object previous = value(slot);
+            values[slot] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Entry<?, ?> entry
+                    && getKey().equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ Objects.hashCode(getValue());
+        }
+    }
+
+    /**
+     * The JSON text of a nested object or array that has not been read yet.
+     */
+    private record UnparsedJson(String json) {
+    }
+
+    /**
+     * Reads a _source object field by field into a document, keeping scalar values as the types a map would get
+     * and nested objects and arrays as their JSON text. The keys are collected first and looked up as a whole in
+     * the schema cache of the reading thread, so a document costs one lookup instead of one per key.
+     */
+    public static class Deserializer extends StdDeserializer<Document> {
+        private static final JsonFactory jsonFactory = new JsonFactory();
+        private static final int INITIAL_FIELDS = 16;
+
+        public Deserializer() {
+            super(Document.class);
+        }
+
+        @Override
+        public Document deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.START_OBJECT) {
+                token = parser.nextToken();
+            }
+            String[] keys = new String[INITIAL_FIELDS];
+            Object[] values = new Object[INITIAL_FIELDS];
+            int count = 0;
+            for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                keys[count] = parser.currentName();
+                values[count++] = readValue(parser, parser.nextToken());
+            }
+            if (token != JsonToken.END_OBJECT) {
+                return (Document) context.handleUnexpectedToken(Document.class, parser);
+            }
+            return of(keys, values, count);
+        }
+
+        private static Object readValue(JsonParser parser, JsonToken token) throws IOException {
+            return switch (token) {
+                case VALUE_STRING -> parser.getText();
+                case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getNumberValue();
+                case VALUE_TRUE -> Boolean.TRUE;
+                case VALUE_FALSE -> Boolean.FALSE;
+                case START_OBJECT, START_ARRAY -> {
+                    StringWriter json = new StringWriter();
+                    try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+                        generator.copyCurrentStructure(parser);
+                    }
+                    yield new UnparsedJson(json.toString());
+                }
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * Writes the fields of a document in order, copying nested values still held as JSON text unchanged.
+     */
+    public static class Serializer extends StdSerializer<Document> {
+
+        public Serializer() {
+            super(Document.class);
+        }
+
+        @Override
+        public void serialize(Document document, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            for (int slot = 0; slot < document.schema.size(); slot++) {
+                generator.writeFieldName(document.schema.key(slot));
+                Object value = document.values[slot];
+                if (value instanceof UnparsedJson unparsed) {
+                    generator.writeRawValue(unparsed.json());
+                } else {
+                    provider.defaultSerializeValue(value, generator);
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
 }
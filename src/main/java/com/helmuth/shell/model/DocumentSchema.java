@@ -0,0 +1,210 @@
+package com.helmuth.shell.model;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The keys of a {@link Document} in order. Documents read from the same page share one schema for each distinct
+ * key order, through the {@link Cache} of the reading thread, instead of each holding a hash table. A document that
+ * gets a key its shared schema lacks copies the keys once into a schema of its own, which then grows in place.
+ */
+public final class DocumentSchema {
+    // below this many keys a linear scan finds a key faster than hashing it
+    private static final int INDEXED_SIZE = 8;
+    static final DocumentSchema EMPTY = new DocumentSchema(new String[0], 0, true);
+
+    private final boolean shared;
+    private String[] keys;
+    private int size;
+    // open addressing table of slot + 1 by key hash for schemas above INDEXED_SIZE keys, built up front for shared
+    // schemas and on the first lookup for the schema of a single document
+    private volatile int[] index;
+
+    private DocumentSchema(String[] keys, int size, boolean shared) {
+        this.keys = keys;
+        this.size = size;
+        this.shared = shared;
+    }
+
+    /**
+     * @return A schema of the keys to share between documents with {@link Document#of(DocumentSchema, Object[])},
+     *         or null if a key occurs twice
+     */
+    public static DocumentSchema of(String... keys) {
+        return shared(keys.clone());
+    }
+
+    /**
+     * @return A shared schema of the keys, or null if a key occurs twice
+     */
+    static DocumentSchema shared(String[] keys) {
+        DocumentSchema schema = new DocumentSchema(keys, keys.length, true);
+        if (keys.length > INDEXED_SIZE) {
+            int[] index = schema.buildIndex();
+            if (index == null) {
+                return null;
+            }
+            schema.index = index;
+        } else if (!distinct(keys)) {
+            return null;
+        }
+        return schema;
+    }
+
+    private static boolean distinct(String[] keys) {
+        for (int i = 1; i < keys.length; i++) {
+            for (int j = 0; j < i; j++) {
+                if (keys[i].equals(keys[j])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The index of the keys, or null if a key occurs twice
+     */
+    private int[] buildIndex() {
+        int[] table = new int[Integer.highestOneBit(Math.max(size, INDEXED_SIZE) * 4 - 1)];
+        for (int i = 0; i < size; i++) {
+            if (!insert(table, i)) {
+                return null;
+            }
+        }
+        return table;
+    }
+
+    private boolean insert(int[] table, int slot) {
+        int mask = table.length - 1;
+        for (int i = hash(keys[slot]) & mask; ; i = (i + 1) & mask) {
+            if (table[i] == 0) {
+                table[i] = slot + 1;
+                return true;
+            }
+            if (keys[table[i] - 1].equals(keys[slot])) {
+                return false;
+            }
+        }
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Adds a key after the keys of this schema. A shared schema stays unchanged and the key is added to a copy
+     * owned by the calling document, which grows in place from then on.
+     * @return The schema with the key added
+     */
+    DocumentSchema with(String key) {
+        DocumentSchema schema = shared
+                ? new DocumentSchema(Arrays.copyOf(keys, Math.max(size * 2, INDEXED_SIZE)), size, false)
+                : this;
+        schema.add(key);
+        return schema;
+    }
+
+    private void add(String key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(size * 2, INDEXED_SIZE));
+        }
+        keys[size++] = key;
+        int[] table = index;
+        if (table != null) {
+            if (size * 2 > table.length) {
+                index = buildIndex();
+            } else {
+                insert(table, size - 1);
+            }
+        }
+    }
+
+    /**
+     * @return The position of the key, or -1 if the schema does not have it
+     */
+    int slot(Object key) {
+        if (size <= INDEXED_SIZE) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        if (key == null) {
+            return -1;
+        }
+        int[] table = index;
+        if (table == null) {
+            // keys were added through put, which checked that each is new
+            table = buildIndex();
+            index = table;
+        }
+        int mask = table.length - 1;
+        for (int i = hash(key) & mask; table[i] != 0; i = (i + 1) & mask) {
+            if (keys[table[i] - 1].equals(key)) {
+                return table[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    boolean isShared() {
+        return shared;
+    }
+
+    String key(int slot) {
+        return keys[slot];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private boolean hasKeys(String[] other, int count) {
+        return size == count && Arrays.equals(keys, 0, size, other, 0, count);
+    }
+
+    /**
+     * The shared schemas of the key orders read most recently by one thread. Documents of a page are read one
+     * after another on the same thread, so they find the schema of the first, while the number of schemas kept,
+     * and their memory, stays bounded however many key orders an index has.
+     */
+    static final class Cache {
+        static final int MAX_SCHEMAS = 64;
+
+        private final Map<List<String>, DocumentSchema> schemas = new LinkedHashMap<>(MAX_SCHEMAS * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, DocumentSchema> eldest) {
+                return size() > MAX_SCHEMAS;
+            }
+        };
+        private DocumentSchema last = EMPTY;
+
+        /**
+         * @param keys The keys read, of which the first count are used
+         * @return The shared schema of the keys, or null if a key occurs twice
+         */
+        DocumentSchema get(String[] keys, int count) {
+            if (last.hasKeys(keys, count)) {
+                return last;
+            }
+            String[] copy = Arrays.copyOf(keys, count);
+            List<String> key = Arrays.asList(copy);
+            DocumentSchema schema = schemas.get(key);
+            if (schema == null) {
+                schema = shared(copy);
+                if (schema == null) {
+                    return null;
+                }
+                schemas.put(key, schema);
+            }
+            last = schema;
+            return schema;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.helmuth.shell.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * A document kept as the JSON text of its _source. Deserializing copies the tokens straight from the response
+ * parser into the text, without building a map, and serializing writes the text back unchanged.
+ */
+@JsonDeserialize(using = RawDocument.Deserializer.class)
+@JsonSerialize(using = RawDocument.Serializer.class)
+public class RawDocument {
+    private String _id;
+    private final String json;
+
+    public RawDocument(String _id, String json) {
+        this._id = _id;
+        this.json = json;
+    }
+
+    public String get_id() {
+        return _id;
+    }
+
+    public void set_id(String _id) {
+        this._id = _id;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "{_id='" + _id + '\'' + '}' + " " + json;
+    }
+
+    public static class Deserializer extends StdDeserializer<RawDocument> {
+        private static final JsonFactory jsonFactory = new JsonFactory();
+
+        public Deserializer() {
+            super(RawDocument.class);
+        }
+
+        @Override
+        public RawDocument deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            StringWriter json = new StringWriter();
+            try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+                generator.copyCurrentStructure(parser);
+            }
+            return new RawDocument(null, json.toString());
+        }
+    }
+
+    public static class Serializer extends StdSerializer<RawDocument> {
+
+        public Serializer() {
+            super(RawDocument.class);
+        }
+
+        @Override
+        public void serialize(RawDocument document, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeRawValue(document.getJson());
+        }
+    }
+}
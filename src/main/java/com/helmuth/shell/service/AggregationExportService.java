@@ -0,0 +1,70 @@
+package com.helmuth.shell.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.util.DocumentExporter;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports the buckets of a composite aggregation page by page, so a summary grouped by a few keys is reduced on
+ * the cluster and only the buckets cross the network.
+ */
+@Service
+public class AggregationExportService {
+    private final IndexService<Document> indexService;
+
+    public AggregationExportService(IndexService<Document> indexService) {
+        this.indexService = indexService;
+    }
+
+    /**
+     * Writes one row per bucket, with the keys first, then the document count and the metrics. The exporter is
+     * initialized and closed by this method.
+     * @return The number of buckets exported
+     */
+    public long export(AggregationRequest request, DocumentExporter exporter) throws IOException {
+        exporter.initialize();
+        try {
+            if (exporter.needsMapping()) {
+                exporter.setMapping(columns(request), List.of(), List.of());
+            }
+            long buckets = 0;
+            Map<String, FieldValue> afterKey = null;
+            AggregationPage page;
+            do {
+                page = indexService.compositeAggregation(request, afterKey);
+                exporter.writeDocuments(page.buckets());
+                buckets += page.buckets().size();
+                afterKey = page.afterKey();
+            } while (!page.isLast());
+            return buckets;
+        } finally {
+            try {
+                exporter.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close export writers");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return The columns of the bucket rows with their mapping types, so CSV columns keep their order and Arrow
+     *         columns their types
+     */
+    private Map<String, String> columns(AggregationRequest request) throws IOException {
+        Map<String, String> mappedFields = indexService.getMappedFields(request.indexName(), true);
+        Map<String, String> columns = new LinkedHashMap<>();
+        request.groups().forEach(group -> columns.put(group.field(),
+                group.isDateHistogram() ? "date" : mappedFields.getOrDefault(group.field(), "keyword")));
+        columns.put(AggregationRequest.DOC_COUNT, "long");
+        request.metrics().forEach(metric -> columns.put(metric.name(),
+                metric.type().equals("cardinality") || metric.type().equals("value_count") ? "long" : "double"));
+        return columns;
+    }
+}
@@ -0,0 +1,19 @@
+package com.helmuth.shell.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import com.helmuth.shell.model.Document;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of composite aggregation buckets.
+ * @param buckets One flat document per bucket, with its keys, document count and metrics
+ * @param afterKey The key to request the next page after, or null after the last page
+ */
+public record AggregationPage(List<Document> buckets, Map<String, FieldValue> afterKey) {
+
+    public boolean isLast() {
+        return afterKey == null || afterKey.isEmpty() || buckets.isEmpty();
+    }
+}
@@ -0,0 +1,73 @@
+package com.helmuth.shell.service;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A composite aggregation to page through: buckets grouped by terms and date histograms, each with the document
+ * count and metrics of its documents.
+ * @param indexName The index to aggregate
+ * @param query A query string selecting the documents, or empty for all
+ * @param groups The sources of the bucket keys, in column order
+ * @param metrics The metrics computed per bucket
+ * @param size The number of buckets per page
+ */
+public record AggregationRequest(String indexName, String query, List<Group> groups, List<Metric> metrics, int size) {
+    public static final String DOC_COUNT = "doc_count";
+    public static final Set<String> METRIC_TYPES = Set.of("sum", "avg", "min", "max", "cardinality", "value_count");
+
+    public AggregationRequest {
+        query = query == null ? "" : query;
+        metrics = metrics == null ? List.of() : metrics;
+    }
+
+    /**
+     * A bucket key source, written as {@code field} for terms or {@code field:interval} for a date histogram.
+     * @param field The field to group by
+     * @param interval A calendar interval such as 1d or 1M, or a fixed interval such as 15m, or null for terms
+     */
+    public record Group(String field, String interval) {
+
+        public static Group parse(String spec) {
+            int separator = spec.lastIndexOf(':');
+            if (separator < 0) {
+                return new Group(spec, null);
+            }
+            if (separator == 0 || separator == spec.length() - 1) {
+                throw new IllegalArgumentException("Group by " + spec + " is not field or field:interval");
+            }
+            return new Group(spec.substring(0, separator), spec.substring(separator + 1));
+        }
+
+        public boolean isDateHistogram() {
+            return interval != null;
+        }
+    }
+
+    /**
+     * A metric of a bucket, written as {@code type:field}.
+     * @param type One of {@link #METRIC_TYPES}
+     * @param field The field to compute the metric of
+     */
+    public record Metric(String type, String field) {
+
+        public static Metric parse(String spec) {
+            int separator = spec.indexOf(':');
+            if (separator <= 0 || separator == spec.length() - 1) {
+                throw new IllegalArgumentException("Metric " + spec + " is not type:field");
+            }
+            String type = spec.substring(0, separator);
+            if (!METRIC_TYPES.contains(type)) {
+                throw new IllegalArgumentException("Metric type " + type + " is not one of " + String.join(", ", METRIC_TYPES));
+            }
+            return new Metric(type, spec.substring(separator + 1));
+        }
+
+        /**
+         * @return The name of the metric column, e.g. sum_bytes
+         */
+        public String name() {
+            return type + "_" + field;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.helmuth.shell.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch.core.ScrollResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import com.helmuth.shell.elasticsearch.config.ElasticsearchProperties;
+import com.helmuth.shell.metrics.ShellMetrics;
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.model.RawDocument;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Serves repeated document lookups and index definitions from bounded caches, so interactive sessions do not
+ * send the same request to a loaded cluster again. Pages of listed and searched documents are cached by
+ * {@link PagingService}. Scrolls, points in time and exports always go to the cluster.
+ * <p>
+ * Any write through this service empties all caches and publishes an {@link IndexWrittenEvent}: aliases and
+ * index patterns make the indices a cached result was read from unknown, and writes are rare next to lookups.
+ */
+@Primary
+@Service
+public class CachingIndexService implements IndexService<Document> {
+    private final IndexServiceImpl delegate;
+    private final ApplicationEventPublisher events;
+    private final ResultCache<DocumentKey, Optional<Document>> documents;
+    private final ResultCache<DefinitionKey, Object> definitions;
+
+    private record DocumentKey(String indexName, String id) {
+    }
+
+    private record DefinitionKey(String indexName, String kind) {
+    }
+
+    public CachingIndexService(IndexServiceImpl delegate, ElasticsearchProperties properties,
+                               ShellMetrics metrics, ApplicationEventPublisher events) {
+        this.delegate = delegate;
+        this.events = events;
+        ElasticsearchProperties.Cache cache = properties.getCache();
+        this.documents = new ResultCache<>("documents", cache.getMaxEntries(), cache.getTtlSeconds(), metrics);
+        this.definitions = new ResultCache<>("definitions", cache.getMaxEntries(), cache.getTtlSeconds(), metrics);
+    }
+
+    private void written(String indexName) {
+        documents.invalidateAll();
+        definitions.invalidateAll();
+        events.publishEvent(new IndexWrittenEvent(this, indexName));
+    }
+
+    @Override
+    public List<String> listIndices() throws IOException {
+        return delegate.listIndices();
+    }
+
+    @Override
+    public String getIndexSettings(String indexName) throws IOException {
+        return (String) definitions.get(new DefinitionKey(indexName, "settings"), () -> delegate.getIndexSettings(indexName));
+    }
+
+    @Override
+    public String getIndexMapping(String indexName) throws IOException {
+        return (String) definitions.get(new DefinitionKey(indexName, "mapping"), () -> delegate.getIndexMapping(indexName));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, String> getMappedFields(String indexName) throws IOException {
+        return (Map<String, String>) definitions.get(new DefinitionKey(indexName, "fields"),
+                () -> Collections.unmodifiableMap(delegate.getMappedFields(indexName)));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, String> getMappedFields(String indexName, boolean includeMultiFields) throws IOException {
+        if (!includeMultiFields) {
+            return getMappedFields(indexName);
+        }
+        return (Map<String, String>) definitions.get(new DefinitionKey(indexName, "fields with multi-fields"),
+                () -> Collections.unmodifiableMap(delegate.getMappedFields(indexName, true)));
+    }
+
+    @Override
+    public void createIndex(String indexName) throws IOException {
+        try {
+            delegate.createIndex(indexName);
+        } finally {
+            written(indexName);
+        }
+    }
+
+    @Override
+    public String getIndexDefinition(String indexName, boolean includeSettings, boolean includeMappings) throws IOException {
+        return delegate.getIndexDefinition(indexName, includeSettings, includeMappings);
+    }
+
+    @Override
+    public void createIndex(String indexName, String definition) throws IOException {
+        try {
+            delegate.createIndex(indexName, definition);
+        } finally {
+            written(indexName);
+        }
+    }
+
+    @Override
+    public void deleteIndex(String indexName) throws IOException {
+        try {
+            delegate.deleteIndex(indexName);
+        } finally {
+            written(indexName);
+        }
+    }
+
+    @Override
+    public long countDocuments(String indexName) throws IOException {
+        return delegate.countDocuments(indexName);
+    }
+
+    @Override
+    public void indexDocuments(String indexName, Collection<Document> documents) throws IOException {
+        try {
+            delegate.indexDocuments(indexName, documents);
+        } finally {
+            written(indexName);
+        }
+    }
+
+    /**
+     * Empties the caches when the ingester is opened. Commands run one at a time, so nothing is read and cached
+     * from the index while the ingester writes to it.
+     */
+    @Override
+    public DocumentIngester openIngester(String indexName) {
+        written(indexName);
+        return delegate.openIngester(indexName);
+    }
+
+    @Override
+    public void indexDocument(String indexName, Map<String, Object> document) {
+        try {
+            delegate.indexDocument(indexName, document);
+        } finally {
+            written(indexName);
+        }
+    }
+
+    /**
+     * @return A copy of the cached document, so changes by the caller do not reach later lookups
+     */
+    @Override
+    public Optional<Document> getDocumentById(String indexName, String id) throws IOException {
+        return documents.get(new DocumentKey(indexName, id), () -> delegate.getDocumentById(indexName, id))
+                .map(Document::copy);
+    }
+
+    @Override
+    public List<Document> multiGet(String indexName, List<String> ids, List<String> includeFields, List<String> excludeFields) throws IOException {
+        return delegate.multiGet(indexName, ids, includeFields, excludeFields);
+    }
+
+    @Override
+    public <D> SearchResponse<D> scrollSearch(CursorRequest request, Class<D> documentClass) throws IOException {
+        return delegate.scrollSearch(request, documentClass);
+    }
+
+    @Override
+    public <D> ScrollResponse<D> scroll(String scrollId, String timeout, Class<D> documentClass) throws IOException {
+        return delegate.scroll(scrollId, timeout, documentClass);
+    }
+
+    @Override
+    public void clearScroll(String scrollId) throws IOException {
+        delegate.clearScroll(scrollId);
+    }
+
+    @Override
+    public String openPointInTime(String indexName, String keepAlive) throws IOException {
+        return delegate.openPointInTime(indexName, keepAlive);
+    }
+
+    @Override
+    public void closePointInTime(String pitId) throws IOException {
+        delegate.closePointInTime(pitId);
+    }
+
+    @Override
+    public <D> SearchResponse<D> searchAfter(CursorRequest request, String pitId, List<FieldValue> searchAfter, Class<D> documentClass) throws IOException {
+        return delegate.searchAfter(request, pitId, searchAfter, documentClass);
+    }
+
+    @Override
+    public SearchResponse<Document> searchPage(PageQuery query, String pitId, String keepAlive, List<FieldValue> searchAfter, int size, boolean fetchSource) throws IOException {
+        return delegate.searchPage(query, pitId, keepAlive, searchAfter, size, fetchSource);
+    }
+
+    @Override
+    public AggregationPage compositeAggregation(AggregationRequest request, Map<String, FieldValue> afterKey) throws IOException {
+        return delegate.compositeAggregation(request, afterKey);
+    }
+
+    @Override
+    public DocumentCursor<Document> openScrollCursor(CursorRequest request) {
+        return delegate.openScrollCursor(request);
+    }
+
+    @Override
+    public DocumentCursor<Document> openPointInTimeCursor(CursorRequest request, String pitId, List<FieldValue> searchAfter) {
+        return delegate.openPointInTimeCursor(request, pitId, searchAfter);
+    }
+
+    @Override
+    public DocumentCursor<RawDocument> openRawScrollCursor(CursorRequest request) {
+        return delegate.openRawScrollCursor(request);
+    }
+
+    @Override
+    public DocumentCursor<RawDocument> openRawPointInTimeCursor(CursorRequest request, String pitId, List<FieldValue> searchAfter) {
+        return delegate.openRawPointInTimeCursor(request, pitId, searchAfter);
+    }
+}
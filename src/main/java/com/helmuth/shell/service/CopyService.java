@@ -0,0 +1,132 @@
+package com.helmuth.shell.service;
+
+import com.helmuth.shell.elasticsearch.config.ElasticsearchClientFactory;
+import com.helmuth.shell.elasticsearch.config.ElasticsearchConnection;
+import com.helmuth.shell.elasticsearch.config.ElasticsearchProperties;
+import com.helmuth.shell.metrics.ShellMetrics;
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.model.RawDocument;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies an index into another index, on the same or another cluster, in one stream: slices of the source are
+ * read in parallel through a point in time and their pages go straight into concurrent bulk requests on the
+ * target, without going through a file. The _source is passed through as raw JSON on the way.
+ */
+@Service
+public class CopyService {
+    private final IndexService<Document> indexService;
+    private final ElasticsearchClientFactory clientFactory;
+    private final ElasticsearchProperties properties;
+    private final ShellMetrics metrics;
+
+    public CopyService(IndexService<Document> indexService, ElasticsearchClientFactory clientFactory,
+                       ElasticsearchProperties properties, ShellMetrics metrics) {
+        this.indexService = indexService;
+        this.clientFactory = clientFactory;
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param request The source index, page size and source filters, sliced if maxSlices is more than one
+     * @param targetHost The cluster to copy to, or null to copy within the configured cluster
+     * @param targetIndex The index to copy to
+     * @param copySettings Whether to create the target index with the settings of the source index
+     * @param copyMappings Whether to create the target index with the mappings of the source index
+     * @param prefetch The number of pages every slice fetches ahead while the previous one is indexed
+     * @return The outcome of the copy
+     */
+    public CopyResult copy(CursorRequest request, String targetHost, String targetIndex, boolean copySettings,
+                           boolean copyMappings, int prefetch) throws Exception {
+        if (targetHost == null || targetHost.isBlank()) {
+            if (request.indexName().equals(targetIndex)) {
+                throw new IllegalArgumentException("An index cannot be copied onto itself");
+            }
+            return copy(request, indexService, targetIndex, copySettings, copyMappings, prefetch);
+        }
+        try (ElasticsearchConnection connection = clientFactory.connect(targetHost)) {
+            IndexService<Document> target = new IndexServiceImpl(clientFactory.createClient(connection.restClient()), properties, metrics);
+            return copy(request, target, targetIndex, copySettings, copyMappings, prefetch);
+        }
+    }
+
+    private CopyResult copy(CursorRequest request, IndexService<Document> target, String targetIndex,
+                            boolean copySettings, boolean copyMappings, int prefetch) throws Exception {
+        if (copySettings || copyMappings) {
+            target.createIndex(targetIndex, indexService.getIndexDefinition(request.indexName(), copySettings, copyMappings));
+        }
+
+        String pitId = indexService.openPointInTime(request.indexName(), request.keepAlive());
+        DocumentIngester ingester = target.openIngester(targetIndex);
+        try (ingester) {
+            if (request.isSliced()) {
+                copySlices(request, pitId, ingester, prefetch);
+            } else {
+                copySlice(request, pitId, ingester, prefetch);
+            }
+        } finally {
+            indexService.closePointInTime(pitId);
+        }
+        return new CopyResult(ingester.getIndexed(), ingester.getFailed(), ingester.getRetried(), ingester.getFirstFailure());
+    }
+
+    private void copySlices(CursorRequest request, String pitId, DocumentIngester ingester, int prefetch) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(request.maxSlices());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int slice = 0; slice < request.maxSlices(); slice++) {
+                CursorRequest sliceRequest = request.withSlice(slice);
+                futures.add(executor.submit(() -> {
+                    copySlice(sliceRequest, pitId, ingester, prefetch);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    executor.shutdownNow();
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private void copySlice(CursorRequest request, String pitId, DocumentIngester ingester, int prefetch) throws IOException {
+        DocumentCursor<RawDocument> opened = indexService.openRawPointInTimeCursor(request, pitId, null);
+        try (DocumentCursor<RawDocument> cursor = prefetch > 0 ? new PrefetchingCursor<>(opened, prefetch, metrics) : opened) {
+            long start = System.nanoTime();
+            DocumentPage<RawDocument> page = cursor.next();
+            metrics.fetchWaited(start);
+            while (!page.isEmpty() && !Thread.currentThread().isInterrupted()) {
+                // blocks while the target has the maximum number of bulk requests in flight
+                ingester.addAllRaw(page.documents());
+                start = System.nanoTime();
+                page = cursor.next();
+                metrics.fetchWaited(start);
+            }
+        }
+    }
+
+    /**
+     * @param copied The number of documents indexed into the target
+     * @param failed The number of documents the target rejected for good
+     * @param retried The number of times a rejected document was retried
+     * @param firstFailure The reason of the first failed document, or null if none failed
+     */
+    public record CopyResult(long copied, long failed, long retried, String firstFailure) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.helmuth.shell.service;
+
+import java.util.List;
+
+/**
+ * A request to page through an index.
+ * @param docValueFields Fields to read from doc values instead of _source, empty to read _source filtered by
+ *                       the include and exclude fields
+ */
+public record CursorRequest(String indexName, int size, String keepAlive,
+                            List<String> includeFields, List<String> excludeFields,
+                            int slice, int maxSlices, List<String> docValueFields) {
+
+    public CursorRequest(String indexName, int size, String keepAlive,
+                         List<String> includeFields, List<String> excludeFields,
+                         int slice, int maxSlices) {
+        this(indexName, size, keepAlive, includeFields, excludeFields, slice, maxSlices, List.of());
+    }
+
+    public CursorRequest withSlice(int slice) {
+        return new CursorRequest(indexName, size, keepAlive, includeFields, excludeFields, slice, maxSlices, docValueFields);
+    }
+
+    public CursorRequest withIndex(String indexName) {
+        return new CursorRequest(indexName, size, keepAlive, includeFields, excludeFields, slice, maxSlices, docValueFields);
+    }
+
+    public CursorRequest withDocValueFields(List<String> docValueFields) {
+        return new CursorRequest(indexName, size, keepAlive, includeFields, excludeFields, slice, maxSlices,
+                docValueFields == null ? List.of() : docValueFields);
+    }
+
+    public boolean isSliced() {
+        return maxSlices > 1;
+    }
+
+    public boolean usesDocValues() {
+        return docValueFields != null && !docValueFields.isEmpty();
+    }
+}
@@ -0,0 +1,16 @@
+package com.helmuth.shell.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Pages through all documents of an index. Closing the cursor releases any server-side context it holds.
+ */
+public interface DocumentCursor<T> extends Closeable {
+
+    /**
+     * Fetches the next page.
+     * @return The next page, empty once the cursor is exhausted
+     */
+    DocumentPage<T> next() throws IOException;
+}
@@ -0,0 +1,246 @@
+package com.helmuth.shell.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkIngester;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkListener;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.helmuth.shell.elasticsearch.config.ElasticsearchProperties;
+import com.helmuth.shell.metrics.ShellMetrics;
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.model.RawDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Indexes documents through concurrent bulk requests that are flushed by operation count and byte size.
+ * {@link #add(Document)} blocks while the maximum number of bulk requests is in flight, which throttles the
+ * producer to what the cluster accepts. Items rejected with 429 are retried with exponential backoff.
+ */
+public class DocumentIngester implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(DocumentIngester.class);
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String REJECTED_EXECUTION = "es_rejected_execution_exception";
+
+    private final String indexName;
+    private final ElasticsearchProperties.Bulk settings;
+    private final BulkIngester<Attempt> ingester;
+    private final ScheduledExecutorService retryScheduler;
+    private final ShellMetrics metrics;
+    private final Map<Long, Long> bulkStarts = new ConcurrentHashMap<>();
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final Object outstandingLock = new Object();
+    private long outstanding;
+    private volatile String firstFailure;
+
+    public DocumentIngester(ElasticsearchClient client, String indexName, ElasticsearchProperties.Bulk settings,
+                            ShellMetrics metrics) {
+        this.indexName = indexName;
+        this.settings = settings;
+        this.metrics = metrics;
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bulk-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ingester = BulkIngester.of(b -> b
+                .client(client)
+                .maxOperations(settings.getMaxOperations())
+                .maxSize(settings.getMaxSizeBytes())
+                .maxConcurrentRequests(settings.getMaxConcurrentRequests())
+                .flushInterval(1, TimeUnit.SECONDS)
+                .listener(new RetryingListener()));
+    }
+
+    public void add(Document document) {
+        add(document.get_id(), document);
+    }
+
+    /**
+     * Adds a raw document, whose JSON text goes into the bulk request as is.
+     * @param document The document to index
+     */
+    public void add(RawDocument document) {
+        add(document.get_id(), document);
+    }
+
+    private void add(String id, Object document) {
+        BulkOperation operation = BulkOperation.of(op -> op.index(i -> i
+                .index(indexName)
+                .id(id)
+                .document(document)));
+        synchronized (outstandingLock) {
+            outstanding++;
+        }
+        metrics.bulkPending(1);
+        long start = System.nanoTime();
+        try {
+            ingester.add(operation, new Attempt(operation, 0));
+        } catch (RuntimeException e) {
+            // never added, so no response will complete it and close() would wait for it forever
+            complete();
+            throw e;
+        }
+        metrics.bulkAddBlocked(start);
+    }
+
+    public void addAll(Collection<Document> documents) {
+        documents.forEach(this::add);
+    }
+
+    public void addAllRaw(Collection<RawDocument> documents) {
+        documents.forEach(this::add);
+    }
+
+    public long getIndexed() {
+        return indexed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    /**
+     * @return The reason of the first item that failed for good, or null if none did
+     */
+    public String getFirstFailure() {
+        return firstFailure;
+    }
+
+    /**
+     * Flushes buffered operations and waits until every operation, including pending retries, has completed.
+     */
+    @Override
+    public void close() throws InterruptedIOException {
+        try {
+            // flushing may block on in-flight requests, whose completion needs the lock, so never flush holding it
+            while (hasOutstanding()) {
+                ingester.flush();
+                synchronized (outstandingLock) {
+                    if (outstanding > 0) {
+                        outstandingLock.wait(100);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for bulk requests to complete");
+        } finally {
+            ingester.close();
+            retryScheduler.shutdownNow();
+        }
+    }
+
+    private boolean hasOutstanding() {
+        synchronized (outstandingLock) {
+            return outstanding > 0;
+        }
+    }
+
+    private void retryOrFail(Attempt attempt, String reason) {
+        if (attempt.number() < settings.getMaxRetries()) {
+            retried.incrementAndGet();
+            metrics.bulkItemRetried();
+            long delay = settings.getInitialBackoffMillis() << attempt.number();
+            retryScheduler.schedule(() -> retry(attempt), delay, TimeUnit.MILLISECONDS);
+        } else {
+            fail(reason);
+        }
+    }
+
+    private void retry(Attempt attempt) {
+        try {
+            ingester.add(attempt.operation(), attempt.next());
+        } catch (RuntimeException e) {
+            fail("Retry could not be added: " + e.getMessage());
+        }
+    }
+
+    private void fail(String reason) {
+        if (failed.getAndIncrement() == 0) {
+            firstFailure = reason;
+            log.warn("Failed to index document into {}: {}", indexName, reason);
+        }
+        metrics.bulkItemFailed();
+        complete();
+    }
+
+    private void succeed() {
+        indexed.incrementAndGet();
+        metrics.bulkItemIndexed();
+        complete();
+    }
+
+    private void complete() {
+        metrics.bulkPending(-1);
+        synchronized (outstandingLock) {
+            if (--outstanding == 0) {
+                outstandingLock.notifyAll();
+            }
+        }
+    }
+
+    private static boolean isRejected(BulkResponseItem item) {
+        return item.status() == TOO_MANY_REQUESTS
+                || (item.error() != null && REJECTED_EXECUTION.equals(item.error().type()));
+    }
+
+    private record Attempt(BulkOperation operation, int number) {
+        Attempt next() {
+            return new Attempt(operation, number + 1);
+        }
+    }
+
+    private class RetryingListener implements BulkListener<Attempt> {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request, List<Attempt> attempts) {
+            bulkStarts.put(executionId, System.nanoTime());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<Attempt> attempts, BulkResponse response) {
+            Long start = bulkStarts.remove(executionId);
+            if (start != null) {
+                metrics.bulkCompleted(start, response.took());
+            }
+            List<BulkResponseItem> items = response.items();
+            for (int i = 0; i < items.size(); i++) {
+                BulkResponseItem item = items.get(i);
+                if (item.error() == null) {
+                    succeed();
+                } else if (isRejected(item)) {
+                    retryOrFail(attempts.get(i), item.error().reason());
+                } else {
+                    fail(item.error().type() + ": " + item.error().reason());
+                }
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<Attempt> attempts, Throwable failure) {
+            bulkStarts.remove(executionId);
+            log.warn("Bulk request {} to {} failed", executionId, indexName, failure);
+            attempts.forEach(attempt -> retryOrFail(attempt, String.valueOf(failure.getMessage())));
+        }
+    }
+}
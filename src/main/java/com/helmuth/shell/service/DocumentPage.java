@@ -0,0 +1,28 @@
+package com.helmuth.shell.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of documents fetched by a {@link DocumentCursor}.
+ * @param documents The documents of the page
+ * @param searchAfter The sort values of the last hit, or null if the cursor cannot be resumed from a position
+ * @param pitId The point in time id returned with the page, to use for later requests, or null if not paging a
+ *              point in time
+ */
+public record DocumentPage<T>(List<T> documents, List<FieldValue> searchAfter, String pitId) {
+
+    public DocumentPage(List<T> documents, List<FieldValue> searchAfter) {
+        this(documents, searchAfter, null);
+    }
+
+    public static <T> DocumentPage<T> empty() {
+        return new DocumentPage<>(Collections.emptyList(), null);
+    }
+
+    public boolean isEmpty() {
+        return documents.isEmpty();
+    }
+}
@@ -0,0 +1,46 @@
+package com.helmuth.shell.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * The state of an export at a point where everything written to the output is consistent with the positions
+ * of its slices, so the export can continue from there after truncating the output.
+ * @param indexName The exported index
+ * @param pitId The point in time the export pages through
+ * @param slices The number of slices
+ * @param bytesWritten The length of the output at the checkpoint
+ * @param documentsWritten The number of documents in the output at the checkpoint
+ * @param sliceStates The position of every slice
+ */
+public record ExportCheckpoint(String indexName, String pitId, int slices, long bytesWritten, long documentsWritten,
+                               List<SliceState> sliceStates) {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param searchAfter The sort values of the last written hit of the slice, or null if none was written
+     * @param done Whether the slice has been exported completely
+     */
+    public record SliceState(List<Object> searchAfter, boolean done) {
+    }
+
+    public static ExportCheckpoint read(Path file) throws IOException {
+        return objectMapper.readValue(file.toFile(), ExportCheckpoint.class);
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file first and moves it into place, so a crash never leaves a
+     * partially written checkpoint behind.
+     * @param file The checkpoint file
+     */
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        objectMapper.writeValue(temporary.toFile(), this);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
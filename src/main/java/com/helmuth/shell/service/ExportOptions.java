@@ -0,0 +1,28 @@
+package com.helmuth.shell.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * How {@link ExportService} pages through an index.
+ * @param pointInTime Whether to page with a point in time and search_after instead of a scroll
+ * @param searchAfter Sort values to start a single-slice point in time export after, or null to start at the beginning.
+ *                    _shard_doc values are only valid within the point in time they came from
+ * @param prefetch The number of pages to fetch ahead while writing, 0 to disable
+ * @param checkpointFile The file to checkpoint progress to, or null to disable checkpoints
+ * @param checkpointIntervalMillis The time between checkpoints
+ * @param resume Whether to continue from the checkpoint file instead of starting over
+ */
+public record ExportOptions(boolean pointInTime, List<FieldValue> searchAfter, int prefetch,
+                            Path checkpointFile, long checkpointIntervalMillis, boolean resume) {
+
+    public static ExportOptions of(boolean pointInTime, int prefetch) {
+        return new ExportOptions(pointInTime, null, prefetch, null, 0, false);
+    }
+
+    public boolean isCheckpointing() {
+        return checkpointFile != null;
+    }
+}
@@ -0,0 +1,98 @@
+package com.helmuth.shell.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import com.helmuth.shell.util.SortValues;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the position of every slice of an export. Updated together with every write to the output, so a
+ * snapshot taken while holding the exporter lock matches what has been written. Also keeps the latest point in
+ * time id, which Elasticsearch may change with every response.
+ */
+class ExportProgress {
+    private final List<List<FieldValue>> positions;
+    private final boolean[] done;
+    private long documents;
+    private String pitId;
+    private boolean outputFailed;
+
+    private ExportProgress(List<List<FieldValue>> positions, boolean[] done, long documents, String pitId) {
+        this.positions = positions;
+        this.done = done;
+        this.documents = documents;
+        this.pitId = pitId;
+    }
+
+    static ExportProgress start(int slices, List<FieldValue> searchAfter) {
+        List<List<FieldValue>> positions = new ArrayList<>();
+        for (int slice = 0; slice < slices; slice++) {
+            positions.add(searchAfter);
+        }
+        return new ExportProgress(positions, new boolean[slices], 0, null);
+    }
+
+    static ExportProgress from(ExportCheckpoint checkpoint) {
+        List<List<FieldValue>> positions = new ArrayList<>();
+        boolean[] done = new boolean[checkpoint.slices()];
+        for (int slice = 0; slice < checkpoint.slices(); slice++) {
+            ExportCheckpoint.SliceState state = checkpoint.sliceStates().get(slice);
+            positions.add(state.searchAfter() != null ? SortValues.fromObjects(state.searchAfter()) : null);
+            done[slice] = state.done();
+        }
+        return new ExportProgress(positions, done, checkpoint.documentsWritten(), checkpoint.pitId());
+    }
+
+    synchronized void written(int slice, List<FieldValue> searchAfter, int count, String pitId) {
+        positions.set(slice, searchAfter);
+        documents += count;
+        if (pitId != null) {
+            this.pitId = pitId;
+        }
+    }
+
+    synchronized void pointInTimeOpened(String pitId) {
+        this.pitId = pitId;
+    }
+
+    /**
+     * @return The latest point in time id, or null if the export does not use a point in time
+     */
+    synchronized String pitId() {
+        return pitId;
+    }
+
+    synchronized void completed(int slice) {
+        done[slice] = true;
+    }
+
+    synchronized void outputFailed() {
+        outputFailed = true;
+    }
+
+    synchronized boolean isOutputFailed() {
+        return outputFailed;
+    }
+
+    synchronized boolean isCompleted(int slice) {
+        return done[slice];
+    }
+
+    synchronized List<FieldValue> position(int slice) {
+        return positions.get(slice);
+    }
+
+    synchronized long documents() {
+        return documents;
+    }
+
+    synchronized ExportCheckpoint toCheckpoint(String indexName, long bytesWritten) {
+        List<ExportCheckpoint.SliceState> states = new ArrayList<>();
+        for (int slice = 0; slice < positions.size(); slice++) {
+            List<FieldValue> position = positions.get(slice);
+            states.add(new ExportCheckpoint.SliceState(position != null ? SortValues.toObjects(position) : null, done[slice]));
+        }
+        return new ExportCheckpoint(indexName, pitId, positions.size(), bytesWritten, documents, states);
+    }
+}
@@ -0,0 +1,249 @@
+package com.helmuth.shell.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import com.helmuth.shell.metrics.ShellMetrics;
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.model.RawDocument;
+import com.helmuth.shell.util.DocumentExporter;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@Service
+public class ExportService {
+    private final IndexService<Document> indexService;
+    private final ShellMetrics metrics;
+
+    public ExportService(IndexService<Document> indexService, ShellMetrics metrics) {
+        this.indexService = indexService;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Exports every document of an index into an exporter, which is initialized and closed by this method.
+     * @param request The index, page size and source filters, sliced if maxSlices is more than one
+     * @param options How to page and whether to checkpoint
+     * @param exporter The exporter to write to
+     * @return The number of documents exported, including those exported before a resumed checkpoint
+     */
+    public long export(CursorRequest request, ExportOptions options, DocumentExporter exporter) throws Exception {
+        ExportCheckpoint checkpoint = options.resume() ? readCheckpoint(request, options) : null;
+        ExportProgress progress = checkpoint != null
+                ? ExportProgress.from(checkpoint)
+                : ExportProgress.start(Math.max(request.maxSlices(), 1), options.searchAfter());
+
+        if (checkpoint != null) {
+            exporter.resume(checkpoint.bytesWritten(), checkpoint.documentsWritten() > 0);
+        } else {
+            exporter.initialize();
+        }
+
+        String pitId = null;
+        ScheduledExecutorService checkpointer = null;
+        boolean completed = false;
+        try {
+            if (options.isCheckpointing() && !exporter.isResumable()) {
+                throw new IllegalArgumentException("Only JSON, NDJSON and CSV file exports can be checkpointed");
+            }
+            if (exporter.needsMapping()) {
+                exporter.setMapping(indexService.getMappedFields(request.indexName(), request.usesDocValues()),
+                        request.usesDocValues() ? request.docValueFields() : request.includeFields(),
+                        request.usesDocValues() ? List.of() : request.excludeFields());
+            }
+            if (checkpoint != null) {
+                pitId = checkpoint.pitId();
+            } else if (options.pointInTime()) {
+                pitId = indexService.openPointInTime(request.indexName(), request.keepAlive());
+                progress.pointInTimeOpened(pitId);
+            }
+            if (options.isCheckpointing()) {
+                checkpointer = startCheckpoints(request, options, progress, exporter);
+            }
+
+            if (request.isSliced()) {
+                exportSlices(request, pitId, options, progress, exporter);
+            } else {
+                exportSlice(request, pitId, options, progress, exporter);
+            }
+            completed = true;
+            return progress.documents();
+        } finally {
+            if (checkpointer != null) {
+                checkpointer.shutdownNow();
+                checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            // the cursors switch to the id each response returns, which replaces the one opened
+            pitId = progress.pitId();
+            if (!completed && options.isCheckpointing() && pitId != null) {
+                // keep the point in time open, the checkpoint refers to it. After a failed write the output may
+                // end in a partial batch, so only the last periodic checkpoint is safe to resume from
+                if (progress.isOutputFailed() ? Files.exists(options.checkpointFile())
+                        : checkpoint(request, options, progress, exporter)) {
+                    System.err.println("Export checkpointed to " + options.checkpointFile()
+                            + ", continue it with --resume before the point in time expires");
+                }
+            } else {
+                if (pitId != null) {
+                    indexService.closePointInTime(pitId);
+                }
+                if (completed && options.isCheckpointing()) {
+                    Files.deleteIfExists(options.checkpointFile());
+                }
+            }
+            try {
+                exporter.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close export writers");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private ExportCheckpoint readCheckpoint(CursorRequest request, ExportOptions options) throws IOException {
+        ExportCheckpoint checkpoint = ExportCheckpoint.read(options.checkpointFile());
+        if (!checkpoint.indexName().equals(request.indexName()) || checkpoint.slices() != Math.max(request.maxSlices(), 1)) {
+            throw new IllegalArgumentException("Checkpoint " + options.checkpointFile() + " belongs to an export of "
+                    + checkpoint.indexName() + " with " + checkpoint.slices() + " slices");
+        }
+        return checkpoint;
+    }
+
+    private ScheduledExecutorService startCheckpoints(CursorRequest request, ExportOptions options,
+                                                      ExportProgress progress, DocumentExporter exporter) {
+        ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "export-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(() -> checkpoint(request, options, progress, exporter),
+                options.checkpointIntervalMillis(), options.checkpointIntervalMillis(), TimeUnit.MILLISECONDS);
+        return checkpointer;
+    }
+
+    private boolean checkpoint(CursorRequest request, ExportOptions options, ExportProgress progress,
+                               DocumentExporter exporter) {
+        try {
+            ExportCheckpoint checkpoint;
+            synchronized (exporter) {
+                if (progress.isOutputFailed()) {
+                    return false;
+                }
+                long bytesWritten = exporter.flush();
+                checkpoint = progress.toCheckpoint(request.indexName(), bytesWritten);
+            }
+            checkpoint.write(options.checkpointFile());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Failed to write export checkpoint");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void exportSlices(CursorRequest request, String pitId, ExportOptions options,
+                              ExportProgress progress, DocumentExporter exporter) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(request.maxSlices());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int slice = 0; slice < request.maxSlices(); slice++) {
+                CursorRequest sliceRequest = request.withSlice(slice);
+                futures.add(executor.submit(() -> {
+                    exportSlice(sliceRequest, pitId, options, progress, exporter);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    executor.shutdownNow();
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private void exportSlice(CursorRequest request, String pitId, ExportOptions options,
+                             ExportProgress progress, DocumentExporter exporter) throws IOException {
+        if (progress.isCompleted(request.slice())) {
+            return;
+        }
+        List<FieldValue> searchAfter = progress.position(request.slice());
+        // JSON and NDJSON output take the _source as is, so skip building a map for every hit
+        if (exporter.supportsRawDocuments() && !request.usesDocValues()) {
+            exportPages(openRawCursor(request, pitId, searchAfter, options.prefetch()), request, options, progress,
+                    exporter, exporter::writeRawDocuments);
+        } else {
+            exportPages(openCursor(request, pitId, searchAfter, options.prefetch()), request, options, progress,
+                    exporter, exporter::writeDocuments);
+        }
+    }
+
+    private <T> void exportPages(DocumentCursor<T> openedCursor, CursorRequest request, ExportOptions options,
+                                 ExportProgress progress, DocumentExporter exporter, Consumer<List<T>> writer) throws IOException {
+        int slice = request.slice();
+        try (DocumentCursor<T> cursor = openedCursor) {
+            DocumentPage<T> page = nextPage(cursor);
+            while (!page.isEmpty() && !Thread.currentThread().isInterrupted()) {
+                // write and record the position in one step, so checkpoints never see one without the other
+                synchronized (exporter) {
+                    try {
+                        writer.accept(page.documents());
+                    } catch (RuntimeException e) {
+                        progress.outputFailed();
+                        throw e;
+                    }
+                    progress.written(slice, page.searchAfter(), page.documents().size(), page.pitId());
+                }
+                page = nextPage(cursor);
+            }
+            if (page.isEmpty()) {
+                progress.completed(slice);
+            }
+        } catch (IOException | RuntimeException e) {
+            // positions are _shard_doc values of this point in time, which is closed on failure, so only a
+            // checkpointed export, which keeps it open, can continue from where it stopped
+            if (options.pointInTime() && !options.isCheckpointing() && progress.position(slice) != null) {
+                System.err.println("Slice " + slice + " stopped, export with --checkpointInterval to be able to"
+                        + " continue with --resume");
+            }
+            throw e;
+        }
+    }
+
+    private <T> DocumentPage<T> nextPage(DocumentCursor<T> cursor) throws IOException {
+        long start = System.nanoTime();
+        DocumentPage<T> page = cursor.next();
+        metrics.fetchWaited(start);
+        return page;
+    }
+
+    private DocumentCursor<Document> openCursor(CursorRequest request, String pitId, List<FieldValue> searchAfter, int prefetch) {
+        return prefetched(pitId != null
+                ? indexService.openPointInTimeCursor(request, pitId, searchAfter)
+                : indexService.openScrollCursor(request), prefetch);
+    }
+
+    private DocumentCursor<RawDocument> openRawCursor(CursorRequest request, String pitId, List<FieldValue> searchAfter, int prefetch) {
+        return prefetched(pitId != null
+                ? indexService.openRawPointInTimeCursor(request, pitId, searchAfter)
+                : indexService.openRawScrollCursor(request), prefetch);
+    }
+
+    private <T> DocumentCursor<T> prefetched(DocumentCursor<T> cursor, int prefetch) {
+        return prefetch > 0 ? new PrefetchingCursor<>(cursor, prefetch, metrics) : cursor;
+    }
+}
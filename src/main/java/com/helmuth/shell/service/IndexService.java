@@ -1,8 +1,10 @@
 package com.helmuth.shell.service;
 
+import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch.core.ScrollResponse;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import com.helmuth.shell.model.Document;
+import com.helmuth.shell.model.RawDocument;
 
 import java.io.IOException;
 import java.util.Collection;
@@ -14,17 +16,28 @@ public interface IndexService<T> {
     List<String> listIndices() throws IOException;
     String getIndexSettings(String indexName) throws IOException;
     String getIndexMapping(String indexName) throws IOException;
+    Map<String, String> getMappedFields(String indexName) throws IOException;
+    Map<String, String> getMappedFields(String indexName, boolean includeMultiFields) throws IOException;
     void createIndex(String indexName) throws IOException;
+    String getIndexDefinition(String indexName, boolean includeSettings, boolean includeMappings) throws IOException;
+    void createIndex(String indexName, String definition) throws IOException;
     void deleteIndex(String indexName) throws IOException;
     long countDocuments(String indexName) throws IOException;
     void indexDocuments(String indexName, Collection<T> documents) throws IOException;
+    DocumentIngester openIngester(String indexName);
     void indexDocument(String indexName, Map<String, Object> document);
     Optional<Document> getDocumentById(String indexName, String id) throws IOException;
-    List<Document> getDocuments(String indexName, int size, int page) throws IOException;
-    List<Document> getDocuments(String indexName, int size, int page, List<String> includeFields, List<String> excludeFields) throws IOException;
-    List<Document> searchDocuments(String indexName, String query, int size, int page) throws IOException;
-    List<Document> searchDocuments(String indexName, String query, int size, int page, List<String> includeFields, List<String> excludeFields) throws IOException;
-    SearchResponse<Document> scrollSearch(String indexName, int size, String timeout, List<String> includeFields, List<String> excludeFields) throws IOException;
-    ScrollResponse<Document> scroll(String scrollId, String timeout) throws IOException;
+    List<Document> multiGet(String indexName, List<String> ids, List<String> includeFields, List<String> excludeFields) throws IOException;
+    <D> SearchResponse<D> scrollSearch(CursorRequest request, Class<D> documentClass) throws IOException;
+    <D> ScrollResponse<D> scroll(String scrollId, String timeout, Class<D> documentClass) throws IOException;
     void clearScroll(String scrollId) throws IOException;
+    String openPointInTime(String indexName, String keepAlive) throws IOException;
+    void closePointInTime(String pitId) throws IOException;
+    <D> SearchResponse<D> searchAfter(CursorRequest request, String pitId, List<FieldValue> searchAfter, Class<D> documentClass) throws IOException;
+    SearchResponse<Document> searchPage(PageQuery query, String pitId, String keepAlive, List<FieldValue> searchAfter, int size, boolean fetchSource) throws IOException;
+    AggregationPage compositeAggregation(AggregationRequest request, Map<String, FieldValue> afterKey) throws IOException;
+    DocumentCursor<Document> openScrollCursor(CursorRequest request);
+    DocumentCursor<Document> openPointInTimeCursor(CursorRequest request, String pitId, List<FieldValue> searchAfter);
+    DocumentCursor<RawDocument> openRawScrollCursor(CursorRequest request);
+    DocumentCursor<RawDocument> openRawPointInTimeCursor(CursorRequest request, String pitId, List<FieldValue> searchAfter);
 }
@@ -1,24 +1,43 @@
 package com.helmuth.shell.service;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.CalendarInterval;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregationSource;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeBucket;
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import co.elastic.clients.elasticsearch._types.mapping.PropertyBase;
 import co.elastic.clients.elasticsearch._types.query_dsl.Operator;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
 import co.elastic.clients.elasticsearch.cat.indices.IndicesRecord;
 import co.elastic.clients.elasticsearch.core.*;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.core.search.SourceFilter;
 import co.elastic.clients.elasticsearch.indices.GetIndicesSettingsResponse;
 import co.elastic.clients.elasticsearch.indices.GetMappingResponse;
+import co.elastic.clients.elasticsearch.indices.get_mapping.IndexMappingRecord;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.helmuth.shell.elasticsearch.config.ElasticsearchProperties;
+import com.helmuth.shell.metrics.ShellMetrics;
 import com.helmuth.shell.model.Document;
+import com.helmuth.shell.model.RawDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.*;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 @Service
@@ -27,10 +46,19 @@ public class IndexServiceImpl implements IndexService<Document> {
     private static final Pattern AND_PATTERN = Pattern.compile("\\band\\b", Pattern.CASE_INSENSITIVE);
     private static final Pattern NOT_PATTERN = Pattern.compile("\\bnot\\b", Pattern.CASE_INSENSITIVE);
     private static final Pattern OR_PATTERN = Pattern.compile("\\bor\\b", Pattern.CASE_INSENSITIVE);
+    private static final String SHARD_DOC_FIELD = "_shard_doc";
+    private static final String COMPOSITE_AGGREGATION = "buckets";
+    private static final String DATE_KEY_FORMAT = "strict_date_time";
+    private static final List<String> GENERATED_SETTINGS = List.of("uuid", "creation_date", "provided_name", "version",
+            "routing", "resize", "history");
     private final ElasticsearchClient client;
+    private final ElasticsearchProperties properties;
+    private final ShellMetrics metrics;
 
-    public IndexServiceImpl(ElasticsearchClient client) {
+    public IndexServiceImpl(ElasticsearchClient client, ElasticsearchProperties properties, ShellMetrics metrics) {
         this.client = client;
+        this.properties = properties;
+        this.metrics = metrics;
     }
 
     @Override
@@ -56,11 +84,86 @@ public class IndexServiceImpl implements IndexService<Document> {
         return objectMapper.writeValueAsString(json);
     }
 
+    /**
+     * Lists the fields of an index mapping as dot paths to their mapping type, flattening object fields into
+     * their sub-fields. Nested fields are kept whole, as their values are arrays of objects.
+     */
+    @Override
+    public Map<String, String> getMappedFields(String indexName) throws IOException {
+        return getMappedFields(indexName, false);
+    }
+
+    /**
+     * @param includeMultiFields Whether to add the multi-fields of a field, e.g. message.keyword, which can be
+     *                           searched, aggregated and read from doc values but are not part of _source
+     */
+    @Override
+    public Map<String, String> getMappedFields(String indexName, boolean includeMultiFields) throws IOException {
+        GetMappingResponse response = client.indices().getMapping(request -> request.index(indexName));
+        IndexMappingRecord record = response.get(indexName) != null
+                ? response.get(indexName)
+                : response.result().values().stream().findFirst().orElseThrow();
+        Map<String, String> fields = new LinkedHashMap<>();
+        collectMappedFields("", record.mappings().properties(), includeMultiFields, fields);
+        return fields;
+    }
+
+    private void collectMappedFields(String prefix, Map<String, Property> properties, boolean includeMultiFields,
+                                     Map<String, String> fields) {
+        properties.keySet().stream().sorted().forEach(name -> {
+            Property property = properties.get(name);
+            String path = prefix + name;
+            if (property.isObject() && !property.object().properties().isEmpty()) {
+                collectMappedFields(path + ".", property.object().properties(), includeMultiFields, fields);
+            } else {
+                fields.put(path, property._kind().jsonValue());
+                if (includeMultiFields && property._get() instanceof PropertyBase base && !base.fields().isEmpty()) {
+                    collectMappedFields(path + ".", base.fields(), true, fields);
+                }
+            }
+        });
+    }
+
     @Override
     public void createIndex(String indexName) throws IOException {
         client.indices().create(req -> req.index(indexName));
     }
 
+    /**
+     * Builds a create index body from an existing index, leaving out the settings that Elasticsearch assigns
+     * itself or that tie the index to the nodes of its cluster.
+     */
+    @Override
+    public String getIndexDefinition(String indexName, boolean includeSettings, boolean includeMappings) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Object> definition = new LinkedHashMap<>();
+        if (includeSettings) {
+            GetIndicesSettingsResponse response = client.indices().getSettings(request -> request.index(indexName));
+            String settings = Objects.requireNonNull(response.get(indexName)).settings().toString();
+            Map<String, Object> json = objectMapper.readValue(settings.replaceFirst("^IndexSettings: ", ""), Map.class);
+            removeGeneratedSettings(json);
+            if (json.get("index") instanceof Map<?, ?> index) {
+                removeGeneratedSettings((Map<String, Object>) index);
+            }
+            definition.put("settings", json);
+        }
+        if (includeMappings) {
+            GetMappingResponse response = client.indices().getMapping(request -> request.index(indexName));
+            String mappings = Objects.requireNonNull(response.get(indexName)).mappings().toString();
+            definition.put("mappings", objectMapper.readValue(mappings.replaceFirst("^TypeMapping: ", ""), Map.class));
+        }
+        return objectMapper.writeValueAsString(definition);
+    }
+
+    private static void removeGeneratedSettings(Map<String, Object> settings) {
+        GENERATED_SETTINGS.forEach(settings::remove);
+    }
+
+    @Override
+    public void createIndex(String indexName, String definition) throws IOException {
+        client.indices().create(req -> req.withJson(new StringReader(definition)).index(indexName));
+    }
+
     @Override
     public void deleteIndex(String indexName) throws IOException {
         client.indices().delete(req -> req.index(indexName));
@@ -74,11 +177,18 @@ public class IndexServiceImpl implements IndexService<Document> {
 
     @Override
     public void indexDocuments(String indexName, Collection<Document> documents) throws IOException {
-        BulkRequest.Builder bulkRequest = new BulkRequest.Builder();
-        for (Document document : documents) {
-            bulkRequest.operations(op -> op.index(i -> i.index(indexName).document(document)));
+        DocumentIngester ingester = openIngester(indexName);
+        try (ingester) {
+            ingester.addAll(documents);
+        }
+        if (ingester.getFailed() > 0) {
+            throw new IOException(ingester.getFailed() + " documents failed to index, first failure: " + ingester.getFirstFailure());
         }
-        client.bulk(bulkRequest.build());
+    }
+
+    @Override
+    public DocumentIngester openIngester(String indexName) {
+        return new DocumentIngester(client, indexName, properties.getBulk(), metrics);
     }
 
 
@@ -91,67 +201,115 @@ public class IndexServiceImpl implements IndexService<Document> {
         return Optional.empty();
     }
 
+    /**
+     * Gets documents by ID in one request.
+     * @return The documents found, without those not found
+     * @throws IOException if a document could not be read, e.g. because its shard is unavailable
+     */
     @Override
-    public List<Document> getDocuments(String indexName, int size, int page) throws IOException {
-        return getDocuments(indexName, size, page, Collections.emptyList(), Collections.emptyList());
+    public List<Document> multiGet(String indexName, List<String> ids, List<String> includeFields, List<String> excludeFields) throws IOException {
+        long start = System.nanoTime();
+        MgetResponse<Document> response = client.mget(req -> req
+                .index(indexName)
+                .ids(ids)
+                .sourceIncludes(isNullOrEmpty(includeFields) ? Collections.emptyList() : includeFields)
+                .sourceExcludes(isNullOrEmpty(excludeFields) ? Collections.emptyList() : excludeFields), Document.class);
+        List<Document> documents = new ArrayList<>(ids.size());
+        for (MultiGetResponseItem<Document> item : response.docs()) {
+            if (item.isFailure()) {
+                throw new IOException("Failed to get document " + item.failure().id() + ": " + item.failure().error().reason());
+            }
+            GetResult<Document> result = item.result();
+            if (result.found()) {
+                Document document = result.source() != null ? result.source() : new Document();
+                document.set_id(result.id());
+                documents.add(document);
+            }
+        }
+        metrics.multiGot(start, documents.size());
+        return documents;
     }
 
-    @Override
-    public List<Document> getDocuments(String indexName, int size, int page, List<String> includeFields, List<String> excludeFields) throws IOException {
-        SearchResponse<Document> search = client.search(req -> req
-                .index(indexName)
-                .size(size)
-                .from(page * size)
-                .source(sc -> sc.filter(SourceFilter.of(sf -> sf
-                        .includes(isNullOrEmpty(includeFields) ? Collections.emptyList() : includeFields)
-                        .excludes(isNullOrEmpty(excludeFields) ? Collections.emptyList() : excludeFields)))),
-                Document.class);
-        System.out.println("took: " + search.took());
-        return search.hits().hits().stream().map(hit -> new Document(hit.id(), hit.source())).toList();
+    private Query toQuery(String searchQuery) {
+        return QueryBuilders.queryString(qs -> qs
+                .query(preprocessSearchQuery(searchQuery))
+                .defaultOperator(Operator.And)
+                .allowLeadingWildcard(true));
     }
 
-    @Override
-    public List<Document> searchDocuments(String indexName, String query, int size, int page) throws IOException {
-        return searchDocuments(indexName, query, size, page, Collections.emptyList(), Collections.emptyList());
+    private String preprocessSearchQuery(String searchQuery) {
+        searchQuery = AND_PATTERN.matcher(searchQuery).replaceAll("AND");
+        searchQuery = OR_PATTERN.matcher(searchQuery).replaceAll("OR");
+        searchQuery = NOT_PATTERN.matcher(searchQuery).replaceAll("NOT");
+        return searchQuery;
     }
 
     @Override
-    public List<Document> searchDocuments(String indexName, String searchQuery, int size, int page, List<String> includeFields, List<String> excludeFields) throws IOException {
+    public <D> SearchResponse<D> scrollSearch(CursorRequest cursorRequest, Class<D> documentClass) throws IOException {
         SearchRequest.Builder request = new SearchRequest.Builder()
-                .index(indexName)
-                .size(size)
-                .from(page * size)
-                .source(sc -> sc.filter(SourceFilter.of(sf -> sf
-                        .includes(isNullOrEmpty(includeFields) ? Collections.emptyList() : includeFields)
-                        .excludes(isNullOrEmpty(excludeFields) ? Collections.emptyList() : excludeFields))));
+                .index(cursorRequest.indexName())
+                .size(cursorRequest.size())
+                .scroll(Time.of(t -> t.time(cursorRequest.keepAlive())));
+        selectFields(request, cursorRequest);
 
-        if (!this.isNullOrEmpty(searchQuery)) {
-            Query query = QueryBuilders.queryString(qs -> qs
-                    .query(preprocessSearchQuery(searchQuery))
-                    .defaultOperator(Operator.And)
-                    .allowLeadingWildcard(true));
-            request.query(query);
+        // a single slice is not a valid sliced scroll, so only slice when there is more than one
+        if (cursorRequest.isSliced()) {
+            request.slice(s -> s.id(String.valueOf(cursorRequest.slice())).max(cursorRequest.maxSlices()));
         }
 
-        SearchResponse<Document> search = client.search(request.build(), Document.class);
-        return search.hits().hits().stream().map(hit -> new Document(hit.id(), hit.source())).toList();
+        return search(request.build(), documentClass);
     }
 
-    private String preprocessSearchQuery(String searchQuery) {
-        searchQuery = AND_PATTERN.matcher(searchQuery).replaceAll("AND");
-        searchQuery = OR_PATTERN.matcher(searchQuery).replaceAll("OR");
-        searchQuery = NOT_PATTERN.matcher(searchQuery).replaceAll("NOT");
-        return searchQuery;
+    /**
+     * Fetches the requested doc values without _source, which spares the cluster loading and decompressing the
+     * stored source of every hit, or else the filtered _source.
+     */
+    private void selectFields(SearchRequest.Builder request, CursorRequest cursorRequest) {
+        if (cursorRequest.usesDocValues()) {
+            request.source(sc -> sc.fetch(false));
+            cursorRequest.docValueFields().forEach(field -> request.docvalueFields(f -> f.field(field)));
+        } else {
+            request.source(sc -> sc.filter(SourceFilter.of(sf -> sf
+                    .includes(isNullOrEmpty(cursorRequest.includeFields()) ? Collections.emptyList() : cursorRequest.includeFields())
+                    .excludes(isNullOrEmpty(cursorRequest.excludeFields()) ? Collections.emptyList() : cursorRequest.excludeFields()))));
+        }
     }
 
-    @Override
-    public SearchResponse<Document> scrollSearch(String indexName, int size, String timeout, List<String> includeFields, List<String> excludeFields) throws IOException {
-        return client.search(req -> req.index(indexName)
-                .size(size)
-                .source(sc -> sc.filter(SourceFilter.of(sf -> sf
-                        .includes(isNullOrEmpty(includeFields) ? Collections.emptyList() : includeFields)
-                        .excludes(isNullOrEmpty(excludeFields) ? Collections.emptyList() : excludeFields))))
-                .scroll(Time.of(t -> t.time(timeout))), Document.class);
+    private <D> SearchResponse<D> search(SearchRequest request, Class<D> documentClass) throws IOException {
+        long start = System.nanoTime();
+        SearchResponse<D> response = client.search(request, documentClass);
+        metrics.searched(start, response.took(), response.hits().hits().size());
+        return response;
+    }
+
+    static Document toDocument(Hit<Document> hit) {
+        Document document = hit.source() != null ? hit.source() : new Document();
+        document.set_id(hit.id());
+        return document;
+    }
+
+    /**
+     * Builds a flat document from the doc values of a hit, keyed by field path. Doc values are always arrays, so
+     * single values are unwrapped.
+     */
+    private static Document toDocValuesDocument(Hit<Document> hit) {
+        Document document = new Document();
+        document.set_id(hit.id());
+        hit.fields().forEach((field, values) -> {
+            List<?> list = values.to(List.class);
+            document.put(field, list.size() == 1 ? list.getFirst() : list);
+        });
+        return document;
+    }
+
+    private static Function<Hit<Document>, Document> documentMapper(CursorRequest request) {
+        return request.usesDocValues() ? IndexServiceImpl::toDocValuesDocument : IndexServiceImpl::toDocument;
+    }
+
+    private static RawDocument toRawDocument(Hit<RawDocument> hit) {
+        RawDocument document = hit.source() != null ? hit.source() : new RawDocument(null, "{}");
+        document.set_id(hit.id());
+        return document;
     }
 
     private boolean isNullOrEmpty(Collection<?> collection) {
@@ -163,9 +321,12 @@ public class IndexServiceImpl implements IndexService<Document> {
     }
 
     @Override
-    public ScrollResponse<Document> scroll(String scrollId, String timeout) throws IOException {
-        return client.scroll(req -> req.scrollId(scrollId)
-                .scroll(Time.of(t -> t.time(timeout))), Document.class);
+    public <D> ScrollResponse<D> scroll(String scrollId, String timeout, Class<D> documentClass) throws IOException {
+        long start = System.nanoTime();
+        ScrollResponse<D> response = client.scroll(req -> req.scrollId(scrollId)
+                .scroll(Time.of(t -> t.time(timeout))), documentClass);
+        metrics.searched(start, response.took(), response.hits().hits().size());
+        return response;
     }
 
     @Override
@@ -173,6 +334,181 @@ public class IndexServiceImpl implements IndexService<Document> {
         client.clearScroll(req -> req.scrollId(scrollId));
     }
 
+    @Override
+    public String openPointInTime(String indexName, String keepAlive) throws IOException {
+        return client.openPointInTime(req -> req
+                .index(indexName)
+                .keepAlive(Time.of(t -> t.time(keepAlive)))).id();
+    }
+
+    @Override
+    public void closePointInTime(String pitId) throws IOException {
+        client.closePointInTime(req -> req.id(pitId));
+    }
+
+    @Override
+    public <D> SearchResponse<D> searchAfter(CursorRequest cursorRequest, String pitId, List<FieldValue> searchAfter, Class<D> documentClass) throws IOException {
+        SearchRequest.Builder request = new SearchRequest.Builder()
+                .size(cursorRequest.size())
+                .pit(p -> p.id(pitId).keepAlive(Time.of(t -> t.time(cursorRequest.keepAlive()))))
+                .sort(so -> so.field(f -> f.field(SHARD_DOC_FIELD)))
+                .trackTotalHits(th -> th.enabled(false));
+        selectFields(request, cursorRequest);
+
+        if (cursorRequest.isSliced()) {
+            request.slice(s -> s.id(String.valueOf(cursorRequest.slice())).max(cursorRequest.maxSlices()));
+        }
+        if (!isNullOrEmpty(searchAfter)) {
+            request.searchAfter(searchAfter);
+        }
+
+        return search(request.build(), documentClass);
+    }
+
+    /**
+     * Searches a page of a point in time with search_after. Searches are sorted by score with the shard doc as
+     * tiebreaker, listings by shard doc only, so the sort values of any hit are a stable position to continue from.
+     */
+    @Override
+    public SearchResponse<Document> searchPage(PageQuery query, String pitId, String keepAlive, List<FieldValue> searchAfter,
+                                               int size, boolean fetchSource) throws IOException {
+        SearchRequest.Builder request = new SearchRequest.Builder()
+                .size(size)
+                .pit(p -> p.id(pitId).keepAlive(Time.of(t -> t.time(keepAlive))))
+                .trackTotalHits(th -> th.enabled(false));
+
+        if (fetchSource) {
+            request.source(sc -> sc.filter(SourceFilter.of(sf -> sf
+                    .includes(query.includeFields())
+                    .excludes(query.excludeFields()))));
+        } else {
+            request.source(sc -> sc.fetch(false));
+        }
+        if (query.hasQuery()) {
+            request.query(toQuery(query.query()))
+                    .sort(so -> so.score(sc -> sc.order(SortOrder.Desc)));
+        }
+        request.sort(so -> so.field(f -> f.field(SHARD_DOC_FIELD)));
+        if (!isNullOrEmpty(searchAfter)) {
+            request.searchAfter(searchAfter);
+        }
+
+        return search(request.build(), Document.class);
+    }
+
+    /**
+     * Requests one page of a composite aggregation. Terms sources keep a bucket for documents without the field,
+     * so the document counts add up to the matching documents, and date histogram keys are ISO 8601 strings.
+     */
+    @Override
+    public AggregationPage compositeAggregation(AggregationRequest aggregationRequest, Map<String, FieldValue> afterKey) throws IOException {
+        List<Map<String, CompositeAggregationSource>> sources = aggregationRequest.groups().stream()
+                .map(group -> Map.of(group.field(), toCompositeSource(group)))
+                .toList();
+        Map<String, Aggregation> metrics = new LinkedHashMap<>();
+        aggregationRequest.metrics().forEach(metric -> metrics.put(metric.name(), toMetricAggregation(metric)));
+
+        SearchRequest.Builder request = new SearchRequest.Builder()
+                .index(aggregationRequest.indexName())
+                .size(0)
+                .trackTotalHits(th -> th.enabled(false))
+                .aggregations(COMPOSITE_AGGREGATION, a -> a
+                        .composite(c -> {
+                            c.size(aggregationRequest.size()).sources(sources);
+                            if (afterKey != null && !afterKey.isEmpty()) {
+                                c.after(afterKey);
+                            }
+                            return c;
+                        })
+                        .aggregations(metrics));
+        if (!isNullOrEmpty(aggregationRequest.query())) {
+            request.query(toQuery(aggregationRequest.query()));
+        }
+
+        CompositeAggregate composite = search(request.build(), Document.class)
+                .aggregations().get(COMPOSITE_AGGREGATION).composite();
+        List<Document> buckets = composite.buckets().array().stream()
+                .map(bucket -> toBucketDocument(bucket, aggregationRequest))
+                .toList();
+        return new AggregationPage(buckets, composite.afterKey());
+    }
+
+    private static CompositeAggregationSource toCompositeSource(AggregationRequest.Group group) {
+        if (!group.isDateHistogram()) {
+            return CompositeAggregationSource.of(s -> s.terms(t -> t.field(group.field()).missingBucket(true)));
+        }
+        CalendarInterval calendarInterval = Arrays.stream(CalendarInterval.values())
+                .filter(interval -> interval.jsonValue().equals(group.interval())
+                        || interval.aliases() != null && Arrays.asList(interval.aliases()).contains(group.interval()))
+                .findFirst()
+                .orElse(null);
+        return CompositeAggregationSource.of(s -> s.dateHistogram(d -> {
+            d.field(group.field()).format(DATE_KEY_FORMAT);
+            return calendarInterval != null
+                    ? d.calendarInterval(calendarInterval)
+                    : d.fixedInterval(Time.of(t -> t.time(group.interval())));
+        }));
+    }
+
+    private static Aggregation toMetricAggregation(AggregationRequest.Metric metric) {
+        String field = metric.field();
+        return switch (metric.type()) {
+            case "sum" -> Aggregation.of(a -> a.sum(m -> m.field(field)));
+            case "avg" -> Aggregation.of(a -> a.avg(m -> m.field(field)));
+            case "min" -> Aggregation.of(a -> a.min(m -> m.field(field)));
+            case "max" -> Aggregation.of(a -> a.max(m -> m.field(field)));
+            case "cardinality" -> Aggregation.of(a -> a.cardinality(m -> m.field(field)));
+            case "value_count" -> Aggregation.of(a -> a.valueCount(m -> m.field(field)));
+            default -> throw new IllegalArgumentException("Unsupported metric " + metric.type());
+        };
+    }
+
+    private static Document toBucketDocument(CompositeBucket bucket, AggregationRequest request) {
+        Document document = new Document();
+        request.groups().forEach(group -> {
+            FieldValue key = bucket.key().get(group.field());
+            document.put(group.field(), key == null || key.isNull() ? null : key._get());
+        });
+        document.put(AggregationRequest.DOC_COUNT, bucket.docCount());
+        request.metrics().forEach(metric -> document.put(metric.name(), metricValue(bucket.aggregations().get(metric.name()))));
+        return document;
+    }
+
+    private static Object metricValue(Aggregate aggregate) {
+        if (aggregate == null) {
+            return null;
+        }
+        return switch (aggregate._kind()) {
+            case Sum -> aggregate.sum().value();
+            case Avg -> aggregate.avg().value();
+            case Min -> aggregate.min().value();
+            case Max -> aggregate.max().value();
+            case Cardinality -> aggregate.cardinality().value();
+            case ValueCount -> aggregate.valueCount().value();
+            default -> null;
+        };
+    }
+
+    @Override
+    public DocumentCursor<Document> openScrollCursor(CursorRequest request) {
+        return new ScrollCursor<>(this, request, Document.class, documentMapper(request));
+    }
+
+    @Override
+    public DocumentCursor<Document> openPointInTimeCursor(CursorRequest request, String pitId, List<FieldValue> searchAfter) {
+        return new PointInTimeCursor<>(this, request, pitId, searchAfter, Document.class, documentMapper(request));
+    }
+
+    @Override
+    public DocumentCursor<RawDocument> openRawScrollCursor(CursorRequest request) {
+        return new ScrollCursor<>(this, request, RawDocument.class, IndexServiceImpl::toRawDocument);
+    }
+
+    @Override
+    public DocumentCursor<RawDocument> openRawPointInTimeCursor(CursorRequest request, String pitId, List<FieldValue> searchAfter) {
+        return new PointInTimeCursor<>(this, request, pitId, searchAfter, RawDocument.class, IndexServiceImpl::toRawDocument);
+    }
+
     @Override
     public void indexDocument(String indexName, Map<String, Object> document) {
         try {
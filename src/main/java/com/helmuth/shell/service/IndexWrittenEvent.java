@@ -0,0 +1,19 @@
+package com.helmuth.shell.service;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when the shell creates, deletes or writes to an index, so cached results of it are no longer used.
+ */
+public class IndexWrittenEvent extends ApplicationEvent {
+    private final String indexName;
+
+    public IndexWrittenEvent(Object source, String indexName) {
+        super(source);
+        this.indexName = indexName;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+}
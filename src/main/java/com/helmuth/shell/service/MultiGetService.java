@@ -0,0 +1,141 @@
+package com.helmuth.shell.service;
+
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.util.DocumentExporter;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Looks up documents by ID in batches of one multi get request each, with several batches in flight, so a list
+ * of IDs costs one round trip per batch instead of one per ID.
+ */
+@Service
+public class MultiGetService {
+    private final IndexService<Document> indexService;
+
+    /**
+     * @param requested The number of IDs read
+     * @param found The number of documents found and written
+     * @param missing The number of IDs not found
+     */
+    public record MultiGetResult(long requested, long found, long missing) {
+    }
+
+    public MultiGetService(IndexService<Document> indexService) {
+        this.indexService = indexService;
+    }
+
+    /**
+     * Reads IDs one per line, ignoring blank lines, and writes the documents found in the order their batches
+     * complete. The exporter is neither initialized nor closed by this method.
+     * @param indexName The index to look up the documents in
+     * @param ids The IDs, read while earlier batches are in flight
+     * @param batchSize The number of IDs per multi get request
+     * @param concurrency The number of requests in flight
+     * @param includeFields The source fields to include, empty for all
+     * @param excludeFields The source fields to exclude
+     * @param exporter The exporter to write the documents found to
+     * @param missing Called with every ID not found, never concurrently with itself or the exporter
+     * @return The numbers of IDs read, found and missing
+     */
+    public MultiGetResult get(String indexName, BufferedReader ids, int batchSize, int concurrency,
+                              List<String> includeFields, List<String> excludeFields,
+                              DocumentExporter exporter, Consumer<String> missing) throws Exception {
+        AtomicLong requested = new AtomicLong();
+        AtomicLong found = new AtomicLong();
+        AtomicLong notFound = new AtomicLong();
+        // bounds the batches read ahead of the requests, so a large ID list is never held in memory at once
+        Semaphore inFlight = new Semaphore(concurrency);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            List<String> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = ids.readLine()) != null) {
+                String id = line.trim();
+                if (id.isEmpty()) {
+                    continue;
+                }
+                batch.add(id);
+                if (batch.size() == batchSize) {
+                    futures.add(submit(executor, inFlight, indexName, batch, includeFields, excludeFields, exporter,
+                            missing, found, notFound));
+                    requested.addAndGet(batch.size());
+                    batch = new ArrayList<>(batchSize);
+                    failFast(futures);
+                }
+            }
+            if (!batch.isEmpty()) {
+                futures.add(submit(executor, inFlight, indexName, batch, includeFields, excludeFields, exporter,
+                        missing, found, notFound));
+                requested.addAndGet(batch.size());
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return new MultiGetResult(requested.get(), found.get(), notFound.get());
+    }
+
+    private Future<?> submit(ExecutorService executor, Semaphore inFlight, String indexName, List<String> batch,
+                             List<String> includeFields, List<String> excludeFields, DocumentExporter exporter,
+                             Consumer<String> missing, AtomicLong found, AtomicLong notFound) throws InterruptedException {
+        inFlight.acquire();
+        return executor.submit(() -> {
+            try {
+                List<Document> documents = indexService.multiGet(indexName, batch, includeFields, excludeFields);
+                Set<String> foundIds = new HashSet<>();
+                documents.forEach(document -> foundIds.add(document.get_id()));
+                synchronized (exporter) {
+                    exporter.writeDocuments(documents);
+                    for (String id : batch) {
+                        if (!foundIds.contains(id)) {
+                            missing.accept(id);
+                            notFound.incrementAndGet();
+                        }
+                    }
+                }
+                found.addAndGet(documents.size());
+                return null;
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Stops reading IDs once a batch has failed, instead of sending the rest of the list first.
+     */
+    private static void failFast(List<Future<?>> futures) throws Exception {
+        for (Future<?> future : futures) {
+            if (future.isDone()) {
+                await(future);
+            }
+        }
+        futures.removeIf(Future::isDone);
+    }
+
+    private static void await(Future<?> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+}
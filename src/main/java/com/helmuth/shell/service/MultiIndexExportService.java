@@ -0,0 +1,168 @@
+package com.helmuth.shell.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.helmuth.shell.metrics.ShellMetrics;
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.util.DocumentExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+/**
+ * Exports several indices at once, each into its own file, so a set of indices takes about as long as the
+ * largest of them instead of their sum. Every index is exported on a virtual thread that blocks on the shared
+ * client, and a limit on the indices exported at a time keeps them from exhausting its connection pool.
+ */
+@Service
+public class MultiIndexExportService {
+    public static final String SUMMARY_FILE = "export-summary.json";
+    private static final Logger log = LoggerFactory.getLogger(MultiIndexExportService.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final IndexService<Document> indexService;
+    private final ExportService exportService;
+    private final ShellMetrics metrics;
+
+    /**
+     * The outcome of exporting one index.
+     * @param indexName The exported index
+     * @param file The file the index was exported to
+     * @param documents The number of documents exported
+     * @param bytes The size of the file
+     * @param millis The time the export took
+     * @param error Why the export failed, or null if it completed
+     */
+    public record IndexExport(String indexName, String file, long documents, long bytes, long millis, String error) {
+
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    public MultiIndexExportService(IndexService<Document> indexService, ExportService exportService, ShellMetrics metrics) {
+        this.indexService = indexService;
+        this.exportService = exportService;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Resolves a comma separated list of index names and patterns against the indices of the cluster. Patterns may
+     * use * as wildcard, and a pattern prefixed with - removes the indices it matches. Hidden indices, starting with
+     * a dot, only match patterns that start with a dot too. Names without wildcards are kept even if not listed, as
+     * they may be aliases.
+     * @return The matching indices in name order
+     */
+    public List<String> resolveIndices(String expression) throws IOException {
+        List<String> indices = indexService.listIndices().stream().sorted().toList();
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String part : expression.split(",")) {
+            String pattern = part.trim();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            boolean exclude = pattern.startsWith("-");
+            if (exclude) {
+                pattern = pattern.substring(1);
+            }
+            List<String> matches = matching(indices, pattern);
+            if (exclude) {
+                matches.forEach(resolved::remove);
+            } else if (matches.isEmpty() && !pattern.contains("*")) {
+                resolved.add(pattern);
+            } else {
+                resolved.addAll(matches);
+            }
+        }
+        return resolved.stream().sorted().toList();
+    }
+
+    private static List<String> matching(List<String> indices, String pattern) {
+        Pattern regex = Pattern.compile(Pattern.quote(pattern).replace("*", "\\E.*\\Q"));
+        boolean hidden = pattern.startsWith(".");
+        return indices.stream()
+                .filter(index -> hidden || !index.startsWith("."))
+                .filter(index -> regex.matcher(index).matches())
+                .toList();
+    }
+
+    /**
+     * Exports every index into {@code <outputDirectory>/<index><extension>} and writes a summary of all exports to
+     * {@link #SUMMARY_FILE} in the same directory. A failed index does not stop the others.
+     * @param indexNames The indices to export
+     * @param request The page size, keep alive, source filters and slices used for every index
+     * @param options How to page, without checkpoints
+     * @param concurrency The number of indices exported at a time
+     * @param outputDirectory The directory to write the files to, created if missing
+     * @param extension The file extension, which decides the format and compression
+     * @param outputHeader Whether to write a header row into CSV files
+     * @param bulkFormat Whether to write NDJSON files as bulk index actions
+     * @return The outcome of every export, in index name order
+     */
+    public List<IndexExport> export(List<String> indexNames, CursorRequest request, ExportOptions options,
+                                    int concurrency, Path outputDirectory, String extension, boolean outputHeader,
+                                    boolean bulkFormat) throws Exception {
+        Files.createDirectories(outputDirectory);
+        Semaphore slots = new Semaphore(concurrency);
+        List<Future<IndexExport>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String indexName : indexNames) {
+                Path file = outputDirectory.resolve(indexName + extension);
+                futures.add(executor.submit(() -> {
+                    slots.acquire();
+                    try {
+                        return exportIndex(indexName, file, request.withIndex(indexName), options, outputHeader, bulkFormat);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+        }
+
+        List<IndexExport> exports = new ArrayList<>();
+        for (Future<IndexExport> future : futures) {
+            try {
+                exports.add(future.get());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        exports.sort(Comparator.comparing(IndexExport::indexName));
+        objectMapper.writeValue(outputDirectory.resolve(SUMMARY_FILE).toFile(), exports);
+        return exports;
+    }
+
+    private IndexExport exportIndex(String indexName, Path file, CursorRequest request, ExportOptions options,
+                                    boolean outputHeader, boolean bulkFormat) throws IOException {
+        long start = System.nanoTime();
+        DocumentExporter exporter = new DocumentExporter(file.toString(), outputHeader, bulkFormat ? indexName : null, metrics);
+        try {
+            long documents = exportService.export(request, options, exporter);
+            return new IndexExport(indexName, file.toString(), documents, Files.size(file), millisSince(start), null);
+        } catch (Exception e) {
+            log.warn("Failed to export {}", indexName, e);
+            long bytes = Files.exists(file) ? Files.size(file) : 0;
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+            return new IndexExport(indexName, file.toString(), 0, bytes, millisSince(start), error);
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
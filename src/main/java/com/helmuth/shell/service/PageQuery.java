@@ -0,0 +1,27 @@
+package com.helmuth.shell.service;
+
+import java.util.List;
+
+/**
+ * A paged listing or search of an index. Pages of equal queries are served from the same cached cursor.
+ * @param indexName The index to page through
+ * @param query A query string, or empty to list all documents
+ * @param size The number of documents per page
+ * @param includeFields The source fields to include, empty for all
+ * @param excludeFields The source fields to exclude
+ */
+public record PageQuery(String indexName, String query, int size, List<String> includeFields, List<String> excludeFields) {
+
+    public PageQuery {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        query = query == null ? "" : query;
+        includeFields = includeFields == null ? List.of() : List.copyOf(includeFields);
+        excludeFields = excludeFields == null ? List.of() : List.copyOf(excludeFields);
+    }
+
+    public boolean hasQuery() {
+        return !query.isEmpty();
+    }
+}
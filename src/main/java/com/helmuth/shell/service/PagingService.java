@@ -0,0 +1,253 @@
+package com.helmuth.shell.service;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.helmuth.shell.elasticsearch.config.ElasticsearchProperties;
+import com.helmuth.shell.metrics.ShellMetrics;
+import com.helmuth.shell.model.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves pages of listings and searches from a point in time with search_after instead of from/size, so a page
+ * costs the same however deep it is and paging is not limited by max_result_window.
+ * <p>
+ * Every distinct {@link PageQuery} keeps a cursor: its point in time, the sort values every visited page starts
+ * after and the page shown last. Going back is a single search, going forward one search per page, and jumping
+ * ahead walks the unvisited pages fetching only sort values. Cursors see the index as it was when they were
+ * opened and are closed when idle for longer than the configured timeout, when too many are open or when the
+ * shell writes to an index. Pages shown before are served from a cache while their cursor is open.
+ */
+@Service
+public class PagingService implements ApplicationListener<IndexWrittenEvent>, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(PagingService.class);
+    // the default index.max_result_window, the largest page a search may return
+    private static final int MAX_SKIP_SIZE = 10_000;
+
+    private final IndexService<Document> indexService;
+    private final ElasticsearchProperties.Paging properties;
+    private final String keepAlive;
+    private final Map<PageQuery, PageCursor> cursors = new LinkedHashMap<>(16, 0.75f, true);
+    private final ResultCache<PageKey, Page> pages;
+    private final ScheduledExecutorService reaper;
+
+    /**
+     * A page of documents.
+     * @param number The number of the page, starting at 0
+     * @param documents The documents of the page, empty past the last page
+     */
+    public record Page(int number, List<Document> documents) {
+    }
+
+    private record PageKey(PageQuery query, int number) {
+    }
+
+    public PagingService(IndexService<Document> indexService, ElasticsearchProperties properties, ShellMetrics metrics) {
+        this.indexService = indexService;
+        this.properties = properties.getPaging();
+        this.pages = new ResultCache<>("pages", properties.getCache().getMaxEntries(), properties.getCache().getTtlSeconds(), metrics);
+        long reapIntervalSeconds = Math.max(1, Math.min(this.properties.getIdleTimeoutSeconds(), 30));
+        // the point in time outlives the idle timeout until the next reap closes it
+        this.keepAlive = (this.properties.getIdleTimeoutSeconds() + 2 * reapIntervalSeconds) + "s";
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "page-cursor-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reaper.scheduleWithFixedDelay(this::closeIdle, reapIntervalSeconds, reapIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param number The number of the page, starting at 0
+     */
+    public synchronized Page page(PageQuery query, int number) throws IOException {
+        if (number < 0) {
+            throw new IllegalArgumentException("Page number must not be negative");
+        }
+        return fetch(query, number);
+    }
+
+    /**
+     * @return The page after the one shown last for the query, or the first page
+     */
+    public synchronized Page next(PageQuery query) throws IOException {
+        PageCursor cursor = cursors.get(query);
+        return fetch(query, cursor != null ? cursor.current + 1 : 0);
+    }
+
+    /**
+     * @return The page before the one shown last for the query, or the first page
+     */
+    public synchronized Page previous(PageQuery query) throws IOException {
+        PageCursor cursor = cursors.get(query);
+        return fetch(query, cursor != null ? Math.max(cursor.current - 1, 0) : 0);
+    }
+
+    /**
+     * Closes all cursors, as they no longer show the index as it is.
+     */
+    @Override
+    public synchronized void onApplicationEvent(IndexWrittenEvent event) {
+        cursors.values().forEach(this::close);
+        cursors.clear();
+        pages.invalidateAll();
+    }
+
+    @Override
+    public void destroy() {
+        reaper.shutdownNow();
+        synchronized (this) {
+            cursors.values().forEach(this::close);
+            cursors.clear();
+        }
+    }
+
+    private Page fetch(PageQuery query, int number) throws IOException {
+        PageCursor cursor = cursors.get(query);
+        if (cursor == null) {
+            return fetch(query, open(query), number);
+        }
+        try {
+            return fetch(query, cursor, number);
+        } catch (ElasticsearchException e) {
+            if (e.status() != 404) {
+                throw e;
+            }
+            // the point in time expired on the cluster, start over from a new one
+            log.info("Point in time of {} expired, reopening it", query);
+            drop(query);
+            return fetch(query, open(query), number);
+        }
+    }
+
+    private Page fetch(PageQuery query, PageCursor cursor, int number) throws IOException {
+        cursor.lastUsed = System.nanoTime();
+        Page page = pages.get(new PageKey(query, number), () -> load(query, cursor, number));
+        if (!page.documents().isEmpty() || number == 0) {
+            cursor.current = number;
+        }
+        return page;
+    }
+
+    private Page load(PageQuery query, PageCursor cursor, int number) throws IOException {
+        if (number >= cursor.pageStarts.size() && number <= cursor.lastPage) {
+            skip(query, cursor, number);
+        }
+        if (number > cursor.lastPage) {
+            return new Page(number, List.of());
+        }
+
+        SearchResponse<Document> response = search(query, cursor, cursor.pageStarts.get(number), query.size(), true);
+        List<Hit<Document>> hits = response.hits().hits();
+        if (hits.size() == query.size()) {
+            if (cursor.pageStarts.size() == number + 1) {
+                cursor.pageStarts.add(hits.getLast().sort());
+            }
+        } else {
+            cursor.lastPage = hits.isEmpty() ? number - 1 : number;
+        }
+        return new Page(number, hits.stream().map(IndexServiceImpl::toDocument).toList());
+    }
+
+    /**
+     * Walks from the furthest page with a known start to the given page with searches that return sort values
+     * only, remembering the start of every page passed.
+     */
+    private void skip(PageQuery query, PageCursor cursor, int number) throws IOException {
+        int size = query.size();
+        long offset = (long) (cursor.pageStarts.size() - 1) * size;
+        List<FieldValue> searchAfter = cursor.pageStarts.getLast();
+        long target = (long) number * size;
+        while (offset < target) {
+            int skipSize = (int) Math.min(target - offset, MAX_SKIP_SIZE);
+            List<Hit<Document>> hits = search(query, cursor, searchAfter, skipSize, false).hits().hits();
+            for (Hit<Document> hit : hits) {
+                offset++;
+                if (offset % size == 0) {
+                    cursor.pageStarts.add(hit.sort());
+                }
+            }
+            if (hits.size() < skipSize) {
+                cursor.lastPage = (int) ((offset - 1) / size);
+                return;
+            }
+            searchAfter = hits.getLast().sort();
+        }
+    }
+
+    private SearchResponse<Document> search(PageQuery query, PageCursor cursor, List<FieldValue> searchAfter, int size,
+                                            boolean fetchSource) throws IOException {
+        SearchResponse<Document> response = indexService.searchPage(query, cursor.pitId, keepAlive, searchAfter, size, fetchSource);
+        if (response.pitId() != null) {
+            cursor.pitId = response.pitId();
+        }
+        return response;
+    }
+
+    private PageCursor open(PageQuery query) throws IOException {
+        PageCursor cursor = new PageCursor(indexService.openPointInTime(query.indexName(), keepAlive));
+        cursors.put(query, cursor);
+        if (cursors.size() > properties.getMaxCursors()) {
+            drop(cursors.keySet().iterator().next());
+        }
+        return cursor;
+    }
+
+    /**
+     * Closes the cursor of a query and forgets its pages, which another cursor may number differently.
+     */
+    private void drop(PageQuery query) {
+        PageCursor cursor = cursors.remove(query);
+        if (cursor != null) {
+            close(cursor);
+        }
+        pages.invalidate(key -> key.query().equals(query));
+    }
+
+    private synchronized void closeIdle() {
+        long idleNanos = TimeUnit.SECONDS.toNanos(properties.getIdleTimeoutSeconds());
+        long now = System.nanoTime();
+        cursors.entrySet().stream()
+                .filter(entry -> now - entry.getValue().lastUsed >= idleNanos)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(this::drop);
+    }
+
+    private void close(PageCursor cursor) {
+        try {
+            indexService.closePointInTime(cursor.pitId);
+        } catch (IOException | RuntimeException e) {
+            // it expires on its own
+            log.warn("Failed to close point in time {}", cursor.pitId, e);
+        }
+    }
+
+    private static final class PageCursor {
+        private String pitId;
+        // the sort values every known page starts after, null for the first page
+        private final List<List<FieldValue>> pageStarts = new ArrayList<>();
+        private int lastPage = Integer.MAX_VALUE;
+        private int current = -1;
+        private long lastUsed = System.nanoTime();
+
+        private PageCursor(String pitId) {
+            this.pitId = pitId;
+            pageStarts.add(null);
+        }
+    }
+}
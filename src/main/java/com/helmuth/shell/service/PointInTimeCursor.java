@@ -0,0 +1,61 @@
+package com.helmuth.shell.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Pages through a point in time with search_after. The point in time is owned by the caller, which may share it
+ * between several sliced cursors, so closing the cursor leaves it open.
+ * @param <D> The type hit sources are deserialized into
+ * @param <T> The type of the documents in a page
+ */
+class PointInTimeCursor<D, T> implements DocumentCursor<T> {
+    private final IndexService<?> indexService;
+    private final CursorRequest request;
+    private final Class<D> documentClass;
+    private final Function<Hit<D>, T> hitMapper;
+    private String pitId;
+    private List<FieldValue> searchAfter;
+    private boolean exhausted;
+
+    PointInTimeCursor(IndexService<?> indexService, CursorRequest request, String pitId, List<FieldValue> searchAfter,
+                      Class<D> documentClass, Function<Hit<D>, T> hitMapper) {
+        this.indexService = indexService;
+        this.request = request;
+        this.pitId = pitId;
+        this.searchAfter = searchAfter;
+        this.documentClass = documentClass;
+        this.hitMapper = hitMapper;
+    }
+
+    @Override
+    public DocumentPage<T> next() throws IOException {
+        if (exhausted) {
+            return DocumentPage.empty();
+        }
+
+        SearchResponse<D> response = indexService.searchAfter(request, pitId, searchAfter, documentClass);
+        if (response.pitId() != null) {
+            pitId = response.pitId();
+        }
+
+        List<Hit<D>> hits = response.hits().hits();
+        if (hits.isEmpty()) {
+            exhausted = true;
+            return DocumentPage.empty();
+        }
+
+        searchAfter = hits.getLast().sort();
+        return new DocumentPage<>(hits.stream().map(hitMapper).toList(), searchAfter, pitId);
+    }
+
+    @Override
+    public void close() {
+        exhausted = true;
+    }
+}
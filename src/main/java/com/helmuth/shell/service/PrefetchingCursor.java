@@ -0,0 +1,108 @@
+package com.helmuth.shell.service;
+
+import com.helmuth.shell.metrics.ShellMetrics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fetches pages of another cursor on a background thread, keeping up to a fixed number of pages ready so the
+ * next request is already on the wire while the caller is still writing the previous page.
+ */
+public class PrefetchingCursor<T> implements DocumentCursor<T> {
+    private final DocumentCursor<T> delegate;
+    private final BlockingQueue<Fetched<T>> pages;
+    private final Thread fetcher;
+    private final ShellMetrics metrics;
+    private volatile boolean closed;
+    private boolean exhausted;
+
+    /**
+     * @param delegate The cursor to fetch from, only ever used by the fetcher thread until this cursor is closed
+     * @param depth The number of pages to fetch ahead
+     * @param metrics Where to report the number of pages waiting
+     */
+    public PrefetchingCursor(DocumentCursor<T> delegate, int depth, ShellMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.pages = new ArrayBlockingQueue<>(depth);
+        this.fetcher = new Thread(this::fetch, "document-prefetch");
+        this.fetcher.setDaemon(true);
+        this.fetcher.start();
+    }
+
+    @Override
+    public DocumentPage<T> next() throws IOException {
+        if (exhausted) {
+            return DocumentPage.empty();
+        }
+
+        Fetched<T> fetched;
+        try {
+            fetched = pages.take();
+            metrics.prefetchQueued(-1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the next page");
+        }
+
+        if (fetched.failure() != null) {
+            exhausted = true;
+            if (fetched.failure() instanceof IOException e) {
+                throw e;
+            }
+            if (fetched.failure() instanceof RuntimeException e) {
+                throw e;
+            }
+            if (fetched.failure() instanceof Error e) {
+                throw e;
+            }
+            throw new IOException(fetched.failure());
+        }
+
+        exhausted = fetched.page().isEmpty();
+        return fetched.page();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        fetcher.interrupt();
+        try {
+            fetcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // pages never taken no longer count as waiting
+        metrics.prefetchQueued(-pages.size());
+        pages.clear();
+        delegate.close();
+    }
+
+    private void fetch() {
+        try {
+            DocumentPage<T> page;
+            do {
+                try {
+                    page = delegate.next();
+                } catch (Throwable e) {
+                    // errors too, or the consumer would wait for a page that never comes
+                    if (!closed) {
+                        pages.put(new Fetched<>(null, e));
+                        metrics.prefetchQueued(1);
+                    }
+                    return;
+                }
+                pages.put(new Fetched<>(page, null));
+                metrics.prefetchQueued(1);
+            } while (!page.isEmpty() && !closed);
+        } catch (InterruptedException e) {
+            // closed while waiting for the consumer to make room
+        }
+    }
+
+    private record Fetched<T>(DocumentPage<T> page, Throwable failure) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.helmuth.shell.service;
+
+import com.helmuth.shell.metrics.ShellMetrics;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A bounded cache of request results that evicts the least recently used entry when full and reloads entries
+ * older than a time to live. Values are loaded outside the lock, so a slow request never blocks other lookups.
+ * @param <K> The request
+ * @param <V> Its result
+ */
+class ResultCache<K, V> {
+    private final String name;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final ShellMetrics metrics;
+    private final Map<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // incremented by every invalidation, so a load that raced with one is not cached
+    private long generation;
+
+    interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    /**
+     * @param name The name the lookups of the cache are counted under
+     * @param maxEntries The number of results kept, 0 to disable the cache
+     * @param ttlSeconds The seconds a result is kept, 0 to disable the cache
+     */
+    ResultCache(String name, int maxEntries, int ttlSeconds, ShellMetrics metrics) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.metrics = metrics;
+    }
+
+    V get(K key, Loader<V> loader) throws IOException {
+        if (maxEntries <= 0 || ttlNanos <= 0) {
+            return loader.load();
+        }
+
+        long loadGeneration;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.loadedNanos() < ttlNanos) {
+                metrics.cacheLookup(name, true);
+                return entry.value();
+            }
+            entries.remove(key);
+            loadGeneration = generation;
+        }
+
+        metrics.cacheLookup(name, false);
+        V value = loader.load();
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(key, new Entry<>(value, System.nanoTime()));
+                if (entries.size() > maxEntries) {
+                    entries.remove(entries.keySet().iterator().next());
+                }
+            }
+        }
+        return value;
+    }
+
+    synchronized void invalidate(Predicate<K> keys) {
+        entries.keySet().removeIf(keys);
+        generation++;
+    }
+
+    synchronized void invalidateAll() {
+        entries.clear();
+        generation++;
+    }
+
+    private record Entry<V>(V value, long loadedNanos) {
+    }
+}
@@ -0,0 +1,58 @@
+package com.helmuth.shell.service;
+
+import co.elastic.clients.elasticsearch.core.ScrollResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * @param <D> The type hit sources are deserialized into
+ * @param <T> The type of the documents in a page
+ */
+class ScrollCursor<D, T> implements DocumentCursor<T> {
+    private final IndexService<?> indexService;
+    private final CursorRequest request;
+    private final Class<D> documentClass;
+    private final Function<Hit<D>, T> hitMapper;
+    private String scrollId;
+    private boolean exhausted;
+
+    ScrollCursor(IndexService<?> indexService, CursorRequest request, Class<D> documentClass, Function<Hit<D>, T> hitMapper) {
+        this.indexService = indexService;
+        this.request = request;
+        this.documentClass = documentClass;
+        this.hitMapper = hitMapper;
+    }
+
+    @Override
+    public DocumentPage<T> next() throws IOException {
+        if (exhausted) {
+            return DocumentPage.empty();
+        }
+
+        List<Hit<D>> hits;
+        if (scrollId == null) {
+            SearchResponse<D> response = indexService.scrollSearch(request, documentClass);
+            scrollId = response.scrollId();
+            hits = response.hits().hits();
+        } else {
+            ScrollResponse<D> response = indexService.scroll(scrollId, request.keepAlive(), documentClass);
+            scrollId = response.scrollId();
+            hits = response.hits().hits();
+        }
+
+        exhausted = hits.isEmpty();
+        return new DocumentPage<>(hits.stream().map(hitMapper).toList(), null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (scrollId != null) {
+            indexService.clearScroll(scrollId);
+            scrollId = null;
+        }
+    }
+}
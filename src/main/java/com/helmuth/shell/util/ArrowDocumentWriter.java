@@ -0,0 +1,249 @@
+package com.helmuth.shell.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.helmuth.shell.model.Document;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.ArrowWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes documents as Arrow IPC record batches, one batch per written page. Columns are typed from the index
+ * mapping: integral fields become 64-bit integers, floating point fields doubles, dates UTC millisecond
+ * timestamps, booleans bits and everything else UTF-8 text, with objects and arrays as JSON. A typed column
+ * takes single values and single-element arrays; values that do not fit the type are written as null.
+ */
+public class ArrowDocumentWriter implements Closeable {
+    private static final ObjectWriter jsonWriter = new ObjectMapper().writer();
+    private static final Set<String> INTEGER_TYPES = Set.of("long", "integer", "short", "byte");
+    private static final Set<String> FLOATING_POINT_TYPES = Set.of("double", "float", "half_float", "scaled_float");
+    private static final Set<String> DATE_TYPES = Set.of("date", "date_nanos");
+
+    private final BufferAllocator allocator;
+    private final VectorSchemaRoot root;
+    private final ArrowWriter writer;
+    private final FieldPath[] paths;
+
+    /**
+     * @param out The stream to write to, closed with this writer
+     * @param fields The mapped fields by dot path, in column order
+     * @param fileFormat Whether to write the random access file format instead of the streaming format
+     */
+    public ArrowDocumentWriter(OutputStream out, Map<String, String> fields, boolean fileFormat) throws IOException {
+        List<Field> arrowFields = new ArrayList<>(fields.size());
+        fields.forEach((path, type) -> arrowFields.add(Field.nullable(path, arrowType(type))));
+        this.paths = fields.keySet().stream().map(FieldPath::new).toArray(FieldPath[]::new);
+        this.allocator = new RootAllocator();
+        this.root = VectorSchemaRoot.create(new Schema(arrowFields), allocator);
+        this.writer = fileFormat
+                ? new ArrowFileWriter(root, null, Channels.newChannel(out))
+                : new ArrowStreamWriter(root, null, out);
+        this.writer.start();
+    }
+
+    /**
+     * Writes the documents as one record batch.
+     * @param documents The documents to write
+     */
+    public void write(List<Document> documents) throws IOException {
+        root.allocateNew();
+        for (int column = 0; column < paths.length; column++) {
+            FieldVector vector = root.getVector(column);
+            for (int row = 0; row < documents.size(); row++) {
+                set(vector, row, paths[column].extract(documents.get(row)));
+            }
+            vector.setValueCount(documents.size());
+        }
+        root.setRowCount(documents.size());
+        writer.writeBatch();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.end();
+            writer.close();
+        } finally {
+            root.close();
+            allocator.close();
+        }
+    }
+
+    private static ArrowType arrowType(String mappingType) {
+        if (INTEGER_TYPES.contains(mappingType)) {
+            return new ArrowType.Int(64, true);
+        }
+        if (FLOATING_POINT_TYPES.contains(mappingType)) {
+            return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+        }
+        if (DATE_TYPES.contains(mappingType)) {
+            return new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC");
+        }
+        if (mappingType.equals("boolean")) {
+            return ArrowType.Bool.INSTANCE;
+        }
+        return ArrowType.Utf8.INSTANCE;
+    }
+
+    private static void set(FieldVector vector, int row, Object value) {
+        if (value instanceof List<?> list && list.size() == 1 && !(vector instanceof VarCharVector)) {
+            value = list.getFirst();
+        }
+
+        switch (vector) {
+            case BigIntVector longs -> {
+                Long number = toLong(value);
+                if (number != null) {
+                    longs.setSafe(row, number);
+                } else {
+                    longs.setNull(row);
+                }
+            }
+            case Float8Vector doubles -> {
+                Double number = toDouble(value);
+                if (number != null) {
+                    doubles.setSafe(row, number);
+                } else {
+                    doubles.setNull(row);
+                }
+            }
+            case TimeStampMilliTZVector timestamps -> {
+                Long millis = toEpochMillis(value);
+                if (millis != null) {
+                    timestamps.setSafe(row, millis);
+                } else {
+                    timestamps.setNull(row);
+                }
+            }
+            case BitVector bits -> {
+                Boolean bool = toBoolean(value);
+                if (bool != null) {
+                    bits.setSafe(row, bool ? 1 : 0);
+                } else {
+                    bits.setNull(row);
+                }
+            }
+            case VarCharVector strings -> {
+                String text = toText(value);
+                if (text != null) {
+                    strings.setSafe(row, text.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    strings.setNull(row);
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected vector " + vector.getClass());
+        }
+    }
+
+    private static Long toLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof String string) {
+            try {
+                return Long.parseLong(string);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Double toDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof String string) {
+            try {
+                return Double.parseDouble(string);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Boolean toBoolean(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        if (value instanceof String string && (string.equals("true") || string.equals("false"))) {
+            return Boolean.parseBoolean(string);
+        }
+        return null;
+    }
+
+    private static Long toEpochMillis(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (!(value instanceof String string)) {
+            return null;
+        }
+        try {
+            return Instant.parse(string).toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return OffsetDateTime.parse(string).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return LocalDateTime.parse(string).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return LocalDate.parse(string).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        return toLong(string);
+    }
+
+    private static String toText(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof String string) {
+            return string;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        try {
+            return jsonWriter.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return String.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.helmuth.shell.util;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+public class CompressionUtil {
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static boolean isGzip(String path) {
+        return path.toLowerCase().endsWith(GZIP_EXTENSION);
+    }
+
+    /**
+     * Strips a compression extension, so the format of "dump.ndjson.gz" can be told from "dump.ndjson".
+     * @param path The file path
+     * @return The path without compression extension
+     */
+    public static String stripCompressionExtension(String path) {
+        return isGzip(path) ? path.substring(0, path.length() - GZIP_EXTENSION.length()) : path;
+    }
+
+    /**
+     * Opens a buffered stream to a file, compressed on all cores if the file name ends with .gz.
+     * @param path The file to write
+     * @return The stream to write uncompressed data to
+     */
+    public static OutputStream openOutput(String path) throws IOException {
+        return openOutput(path, false);
+    }
+
+    /**
+     * Opens a buffered stream to a file like {@link #openOutput(String)}, optionally appending to it. Appended
+     * gzip data becomes a new member, which gzip readers decompress as if it was one stream.
+     * @param path The file to write
+     * @param append Whether to keep the existing content of the file
+     * @return The stream to write uncompressed data to
+     */
+    public static OutputStream openOutput(String path, boolean append) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(path, append), BUFFER_SIZE);
+        return isGzip(path) ? new ParallelGzipOutputStream(out) : out;
+    }
+
+    /**
+     * Opens a buffered stream from a file, decompressing it if the file name ends with .gz.
+     * @param file The file to read
+     * @return The stream to read uncompressed data from
+     */
+    public static InputStream openInput(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        return isGzip(file.getName())
+                ? new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE)
+                : new BufferedInputStream(in, BUFFER_SIZE);
+    }
+}
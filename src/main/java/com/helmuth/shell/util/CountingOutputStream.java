@@ -0,0 +1,30 @@
+package com.helmuth.shell.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Reports the number of bytes passing through to another stream.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+    private final LongConsumer counter;
+
+    public CountingOutputStream(OutputStream out, LongConsumer counter) {
+        super(out);
+        this.counter = counter;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        counter.accept(1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        counter.accept(len);
+    }
+}
@@ -0,0 +1,66 @@
+package com.helmuth.shell.util;
+
+import com.helmuth.shell.model.Document;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.RFC4180Parser;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads documents from a CSV file whose first row holds the field names.
+ */
+public class CsvDocumentReader implements DocumentReader {
+    private final CSVReader reader;
+    private final String[] headers;
+    private final CsvRowConverter converter;
+    private final int batchSize;
+
+    public CsvDocumentReader(File file, int batchSize) throws IOException {
+        this(file, batchSize, Map.of());
+    }
+
+    /**
+     * @param file The file to read
+     * @param batchSize The number of documents per batch
+     * @param fieldTypes The mapping type by field path, to convert cells to, e.g. from the target index mapping
+     */
+    public CsvDocumentReader(File file, int batchSize, Map<String, String> fieldTypes) throws IOException {
+        this.reader = new CSVReaderBuilder(new InputStreamReader(CompressionUtil.openInput(file), StandardCharsets.UTF_8))
+                .withCSVParser(new RFC4180Parser())
+                .build();
+        this.batchSize = batchSize;
+        this.headers = readNext();
+        this.converter = headers != null ? new CsvRowConverter(headers, fieldTypes) : null;
+    }
+
+    @Override
+    public List<Document> nextBatch() throws IOException {
+        List<Document> batch = new ArrayList<>(batchSize);
+        String[] row;
+        while (headers != null && batch.size() < batchSize && (row = readNext()) != null) {
+            batch.add(converter.toDocument(row));
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String[] readNext() throws IOException {
+        try {
+            return reader.readNext();
+        } catch (CsvValidationException e) {
+            throw new IOException("Invalid CSV row at line " + reader.getLinesRead(), e);
+        }
+    }
+}
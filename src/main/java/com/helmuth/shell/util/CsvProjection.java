@@ -0,0 +1,62 @@
+package com.helmuth.shell.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fixed set of CSV columns, each addressed by a {@link FieldPath} into the document.
+ */
+public class CsvProjection {
+    private static final ObjectWriter jsonWriter = new ObjectMapper().writer();
+
+    private final String[] header;
+    private final FieldPath[] columns;
+    private final String[] row;
+
+    public CsvProjection(List<String> paths) {
+        this.header = paths.toArray(new String[0]);
+        this.columns = paths.stream().map(FieldPath::new).toArray(FieldPath[]::new);
+        this.row = new String[columns.length];
+    }
+
+    public boolean isEmpty() {
+        return columns.length == 0;
+    }
+
+    public String[] header() {
+        return header;
+    }
+
+    /**
+     * Projects a document onto the columns. The returned array is reused by the next call.
+     * @param document The document
+     * @return The cells of the row
+     */
+    public String[] project(Map<String, Object> document) {
+        for (int i = 0; i < columns.length; i++) {
+            row[i] = format(columns[i].extract(document));
+        }
+        return row;
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof String string) {
+            return string;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        try {
+            return jsonWriter.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return String.valueOf(value);
+        }
+    }
+}
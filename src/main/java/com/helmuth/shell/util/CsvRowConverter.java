@@ -0,0 +1,186 @@
+package com.helmuth.shell.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.helmuth.shell.model.Document;
+import com.helmuth.shell.model.DocumentSchema;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns CSV rows into documents, with the header row naming the fields. Every column gets one converter up
+ * front, chosen by the mapping type of its field, so cells arrive in Elasticsearch as the type they are mapped
+ * as instead of as strings that need coercion or trigger dynamic mapping. Cells that do not parse as their type
+ * are kept as text for Elasticsearch to accept or reject, and empty cells of non-text columns are left out.
+ * Multi-valued fields, exported as JSON arrays, are converted element by element. Unmapped columns keep the old
+ * behavior: JSON objects and arrays are parsed, everything else is text.
+ */
+class CsvRowConverter {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String[] headers;
+    // shared by the documents of all rows, or null if a header repeats
+    private final DocumentSchema schema;
+    private final CellConverter[] converters;
+
+    CsvRowConverter(String[] headers) {
+        this(headers, Map.of());
+    }
+
+    /**
+     * @param headers The field names
+     * @param fieldTypes The mapping type by field path, e.g. from the target index mapping
+     */
+    CsvRowConverter(String[] headers, Map<String, String> fieldTypes) {
+        this.headers = headers;
+        this.schema = DocumentSchema.of(headers);
+        this.converters = new CellConverter[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            converters[i] = converter(fieldTypes.get(headers[i].trim()));
+        }
+    }
+
+    Document toDocument(String[] row) throws IOException {
+        Object[] values = new Object[headers.length];
+        for (int i = 0; i < row.length && i < headers.length; i++) {
+            values[i] = converters[i].convert(row[i].trim());
+        }
+        if (schema != null) {
+            return Document.of(schema, values);
+        }
+
+        // a repeated header, the last column wins
+        Document document = new Document();
+        for (int i = 0; i < headers.length; i++) {
+            if (values[i] != null) {
+                document.put(headers[i], values[i]);
+            }
+        }
+        return document;
+    }
+
+    private static CellConverter converter(String type) {
+        if (type == null) {
+            return CsvRowConverter::guess;
+        }
+        return switch (type) {
+            // unsigned longs above Long.MAX_VALUE stay text, which Elasticsearch accepts for them
+            case "long", "integer", "short", "byte", "unsigned_long" -> elementWise(CsvRowConverter::toLong);
+            case "double", "float", "half_float", "scaled_float" -> elementWise(CsvRowConverter::toDouble);
+            case "boolean" -> elementWise(CsvRowConverter::toBoolean);
+            case "date", "date_nanos" -> elementWise(CsvRowConverter::toDate);
+            case "object", "nested", "flattened", "geo_shape", "shape" -> CsvRowConverter::toJson;
+            case "geo_point" -> value -> value.isEmpty() ? null : value.startsWith("{") || value.startsWith("[") ? toJson(value) : value;
+            default -> elementWise(value -> value);
+        };
+    }
+
+    /**
+     * Applies a converter to each element of a cell holding a JSON array, as multi-valued fields are exported, and
+     * to the cell itself otherwise. Elements that JSON already typed are kept as they are.
+     */
+    private static CellConverter elementWise(CellConverter converter) {
+        return value -> {
+            if (!value.startsWith("[")) {
+                return converter.convert(value);
+            }
+            List<?> elements;
+            try {
+                elements = objectMapper.readValue(value, List.class);
+            } catch (JsonProcessingException e) {
+                // text that merely starts with a bracket
+                return converter.convert(value);
+            }
+            List<Object> converted = new ArrayList<>(elements.size());
+            for (Object element : elements) {
+                converted.add(element instanceof String text ? converter.convert(text) : element);
+            }
+            return converted;
+        };
+    }
+
+    private static Object guess(String value) throws IOException {
+        // Handle JSON objects
+        if (value.startsWith("{")) {
+            return objectMapper.readValue(value, Map.class);
+        }
+        // Handle JSON arrays
+        else if (value.startsWith("[")) {
+            return objectMapper.readValue(value, List.class);
+        }
+        // Handle regular strings
+        return value;
+    }
+
+    private static Object toLong(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    private static Object toDouble(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    private static Object toBoolean(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        if (value.equalsIgnoreCase("true")) {
+            return Boolean.TRUE;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return Boolean.FALSE;
+        }
+        return value;
+    }
+
+    /**
+     * Dates stay text for the mapping's date format to parse, except epoch milliseconds, which become numbers.
+     */
+    private static Object toDate(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i)) && !(i == 0 && value.charAt(i) == '-' && value.length() > 1)) {
+                return value;
+            }
+        }
+        return toLong(value);
+    }
+
+    /**
+     * Cells that are not JSON, such as WKT shapes, stay text.
+     */
+    private static Object toJson(String value) throws IOException {
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(value, Object.class);
+        } catch (JsonProcessingException e) {
+            return value;
+        }
+    }
+
+    @FunctionalInterface
+    private interface CellConverter {
+        Object convert(String value) throws IOException;
+    }
+}
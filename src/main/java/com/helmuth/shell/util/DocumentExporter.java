@@ -2,39 +2,135 @@ package com.helmuth.shell.util;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.helmuth.shell.metrics.ShellMetrics;
 import com.helmuth.shell.model.Document;
+import com.helmuth.shell.model.RawDocument;
 import com.opencsv.CSVWriter;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class DocumentExporter {
     private static final String CSV_EXTENSION = ".csv";
     private static final String JSON_EXTENSION = ".json";
+    private static final String NDJSON_EXTENSION = ".ndjson";
+    private static final String ARROW_FILE_EXTENSION = ".arrow";
+    private static final String ARROW_STREAM_EXTENSION = ".arrows";
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
     private CSVWriter csvWriter;
     private PrintWriter jsonWriter;
+    private PrintWriter ndjsonWriter;
+    private OutputStream arrowOutput;
+    private ArrowDocumentWriter arrowWriter;
     private String fileExtension = CSV_EXTENSION;
     private final String output;
     private final boolean outputHeader;
+    private final String bulkIndex;
+    private final ShellMetrics metrics;
+    private CsvProjection projection;
+    private boolean started;
 
     public DocumentExporter(String output, boolean outputHeader) {
+        this(output, outputHeader, null);
+    }
+
+    /**
+     * @param output The file to write to, or null to print to the console
+     * @param outputHeader Whether to write a CSV header row
+     * @param bulkIndex If set, NDJSON output precedes every document with a bulk index action for this index,
+     *                  so the file can be sent to _bulk as is
+     */
+    public DocumentExporter(String output, boolean outputHeader, String bulkIndex) {
+        this(output, outputHeader, bulkIndex, ShellMetrics.NOOP);
+    }
+
+    /**
+     * @param metrics Where to report documents and bytes written and the time spent writing them
+     */
+    public DocumentExporter(String output, boolean outputHeader, String bulkIndex, ShellMetrics metrics) {
         this.output = output;
         this.outputHeader = outputHeader;
+        this.bulkIndex = bulkIndex;
+        this.metrics = metrics;
     }
 
     public void initialize() throws IOException {
+        open(false);
+    }
+
+    /**
+     * Continues an output file written up to a checkpoint instead of starting a new one. Everything after the
+     * checkpoint is cut off, and neither the JSON array start nor the CSV header is written again.
+     * @param offset The length of the output at the checkpoint, as returned by {@link #flush()}
+     * @param anyWritten Whether any documents had been written at the checkpoint
+     */
+    public void resume(long offset, boolean anyWritten) throws IOException {
+        if (output == null || output.isEmpty()) {
+            throw new IllegalStateException("Only exports to a file can be resumed");
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(output), StandardOpenOption.WRITE)) {
+            if (channel.size() < offset) {
+                throw new IOException("Output " + output + " is shorter than its checkpoint");
+            }
+            channel.truncate(offset);
+        }
+        started = anyWritten;
+        open(true);
+    }
+
+    private void open(boolean append) throws IOException {
         if (output != null && !output.isEmpty()) {
-            fileExtension = getFileExtension(output);
+            fileExtension = getFileExtension(CompressionUtil.stripCompressionExtension(output));
+            if (isArrow()) {
+                // the schema comes from the mapping, so the writer is created once that is known
+                arrowOutput = new CountingOutputStream(CompressionUtil.openOutput(output, append), metrics::bytesWritten);
+                return;
+            }
+            Writer writer = new OutputStreamWriter(
+                    new CountingOutputStream(CompressionUtil.openOutput(output, append), metrics::bytesWritten),
+                    StandardCharsets.UTF_8);
             if (fileExtension.equals(JSON_EXTENSION)) {
-                jsonWriter = new PrintWriter(new FileWriter(output));
-                jsonWriter.print("["); // Start JSON array
+                jsonWriter = new PrintWriter(writer);
+                if (!append) {
+                    jsonWriter.print("["); // Start JSON array
+                }
+            } else if (fileExtension.equals(NDJSON_EXTENSION)) {
+                ndjsonWriter = new PrintWriter(writer);
             } else {
-                csvWriter = new CSVWriter(new FileWriter(output));
+                csvWriter = new CSVWriter(writer);
+            }
+        }
+    }
+
+    /**
+     * Writes everything buffered so far through to the output file. Callers that need the result to match
+     * other state, e.g. an export checkpoint, hold the exporter lock while calling this.
+     * @return The length of the output file afterwards
+     */
+    public synchronized long flush() throws IOException {
+        if (csvWriter != null) {
+            csvWriter.flush();
+        }
+        PrintWriter writer = jsonWriter != null ? jsonWriter : ndjsonWriter;
+        if (writer != null) {
+            writer.flush();
+            if (writer.checkError()) {
+                throw new IOException("Failed to write to " + output);
             }
         }
+        if (arrowOutput != null) {
+            arrowOutput.flush();
+        }
+        return output != null && !output.isEmpty() ? Files.size(Path.of(output)) : 0;
     }
 
     public void close() throws IOException {
@@ -45,12 +141,41 @@ public class DocumentExporter {
             jsonWriter.print("]");
             jsonWriter.close();
         }
+        if (ndjsonWriter != null) {
+            ndjsonWriter.close();
+        }
+        if (arrowWriter != null) {
+            arrowWriter.close();
+        } else if (arrowOutput != null) {
+            arrowOutput.close();
+        }
+    }
+
+    /**
+     * Writes a batch of documents, tracking on its own whether anything has been written yet.
+     * Safe to call from several threads sharing one exporter, e.g. concurrent scroll slices.
+     * @param documents The documents to write
+     */
+    public synchronized void writeDocuments(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        writeDocuments(documents, !started);
     }
 
-    public void writeDocuments(List<Document> documents, boolean firstBatch) {
+    public synchronized void writeDocuments(List<Document> documents, boolean firstBatch) {
         if (!firstBatch && documents.isEmpty()) {
             return;
         }
+        if (!documents.isEmpty()) {
+            started = true;
+        }
+        long start = System.nanoTime();
+
+        if (csvWriter != null && !documents.isEmpty() && (projection == null || projection.isEmpty())) {
+            // without mapping derived columns, the first document decides them
+            projection = new CsvProjection(new ArrayList<>(documents.getFirst().keySet()));
+        }
 
         if (outputHeader && fileExtension.equals(CSV_EXTENSION) && firstBatch && !documents.isEmpty()) {
             printHeader(documents.getFirst());
@@ -60,9 +185,81 @@ public class DocumentExporter {
             writeDocumentsIntoCsvFile(documents);
         } else if (jsonWriter != null) {
             writeDocumentsIntoJsonFile(documents, !firstBatch);
+        } else if (ndjsonWriter != null) {
+            writeDocumentsIntoNdjsonFile(documents);
+        } else if (arrowOutput != null) {
+            writeDocumentsIntoArrowFile(documents);
         } else {
             printInConsole(documents);
         }
+        metrics.written(start, documents.size());
+    }
+
+    /**
+     * Sets the fields to export, typically taken from the index mapping. CSV output writes them as columns, so
+     * every row has the same columns in the same order whatever fields a document has, and Arrow output
+     * derives its schema from them.
+     * @param mappedFields The mapped fields by dot path
+     * @param includeFields Field patterns to keep, all fields if empty
+     * @param excludeFields Field patterns to drop
+     */
+    public void setMapping(Map<String, String> mappedFields, List<String> includeFields, List<String> excludeFields) throws IOException {
+        Map<String, String> fields = FieldPath.select(mappedFields, includeFields, excludeFields);
+        if (csvWriter != null) {
+            projection = new CsvProjection(List.copyOf(fields.keySet()));
+        } else if (arrowOutput != null && !fields.isEmpty()) {
+            arrowWriter = new ArrowDocumentWriter(arrowOutput, fields, fileExtension.equals(ARROW_FILE_EXTENSION));
+        }
+    }
+
+    /**
+     * @return Whether the output uses the fields set by {@link #setMapping(Map, List, List)}
+     */
+    public boolean needsMapping() {
+        return csvWriter != null || arrowOutput != null;
+    }
+
+    /**
+     * @return Whether the output is JSON or NDJSON, which {@link #writeRawDocuments(List)} can write without
+     *         converting the documents
+     */
+    public boolean supportsRawDocuments() {
+        return jsonWriter != null || ndjsonWriter != null;
+    }
+
+    /**
+     * Writes a batch of raw documents, copying their JSON text to the output as is.
+     * Safe to call from several threads sharing one exporter, e.g. concurrent scroll slices.
+     * @param documents The documents to write
+     */
+    public synchronized void writeRawDocuments(List<RawDocument> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        boolean anyProcessedYet = started;
+        started = true;
+        long start = System.nanoTime();
+
+        if (jsonWriter != null) {
+            writeJsonArrayElements(documents.stream().map(RawDocument::getJson).toList(), anyProcessedYet);
+        } else if (ndjsonWriter != null) {
+            documents.forEach(document -> writeNdjsonLine(document.get_id(), document.getJson()));
+        } else {
+            documents.forEach(System.out::println);
+        }
+        metrics.written(start, documents.size());
+    }
+
+    /**
+     * @return Whether the output can be continued with {@link #resume(long, boolean)}, which holds for JSON,
+     *         NDJSON and CSV files but not for Arrow, whose batches and footer cannot be cut at any flush
+     */
+    public boolean isResumable() {
+        return csvWriter != null || jsonWriter != null || ndjsonWriter != null;
+    }
+
+    private boolean isArrow() {
+        return fileExtension.equals(ARROW_FILE_EXTENSION) || fileExtension.equals(ARROW_STREAM_EXTENSION);
     }
 
     private static String getFileExtension(String output) {
@@ -77,61 +274,90 @@ public class DocumentExporter {
             return;
         }
         if (csvWriter != null) {
-            String[] headers = document.keySet().toArray(new String[0]);
-            csvWriter.writeNext(headers);
+            csvWriter.writeNext(projection.header());
         } else {
             System.out.println(document.keySet());
         }
     }
 
     private void writeDocumentsIntoJsonFile(List<Document> documents, boolean anyProcessedYet) {
-        if (jsonWriter != null) {
-            for (int i = 0; i < documents.size(); i++) {
-                try {
-                    if (anyProcessedYet && i == 0) {
-                        jsonWriter.println(",");
-                    }
-                    String json = objectMapper.writeValueAsString(documents.get(i));
-                    if (i == (documents.size() - 1)) {
-                        jsonWriter.print(json);
-                    } else {
-                        jsonWriter.println(json + ",");
-                    }
-                } catch (JsonProcessingException e) {
-                    e.printStackTrace();
-                }
+        List<String> jsons = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            try {
+                jsons.add(objectMapper.writeValueAsString(document));
+            } catch (JsonProcessingException e) {
+                e.printStackTrace();
             }
         }
+        writeJsonArrayElements(jsons, anyProcessedYet);
     }
 
-    private void writeDocumentsIntoCsvFile(List<Document> documents) {
-        documents.forEach(doc -> {
-            if (doc != null && !doc.isEmpty()) {
-                String[] data = doc.values().stream()
-                        .map(this::printField)
-                        .toArray(String[]::new);
-                csvWriter.writeNext(data);
+    private void writeJsonArrayElements(List<String> jsons, boolean anyProcessedYet) {
+        for (int i = 0; i < jsons.size(); i++) {
+            if (anyProcessedYet && i == 0) {
+                jsonWriter.println(",");
             }
-        });
+            if (i == (jsons.size() - 1)) {
+                jsonWriter.print(jsons.get(i));
+            } else {
+                jsonWriter.println(jsons.get(i) + ",");
+            }
+        }
     }
 
-    private static void printInConsole(List<Document> documents) {
-        documents.forEach(System.out::println);
+    private void writeDocumentsIntoNdjsonFile(List<Document> documents) {
+        for (Document document : documents) {
+            try {
+                writeNdjsonLine(document.get_id(), objectMapper.writeValueAsString(document));
+            } catch (JsonProcessingException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
-    private String printField(Object field) {
-        if (field == null) {
-            return "";
+    private void writeNdjsonLine(String id, String json) {
+        if (bulkIndex != null) {
+            try {
+                ndjsonWriter.println(objectMapper.writeValueAsString(bulkAction(id)));
+            } catch (JsonProcessingException e) {
+                e.printStackTrace();
+            }
         }
+        ndjsonWriter.println(json);
+    }
 
-        if (field instanceof String) {
-            return field.toString();
-        } else {
-            try {
-                return objectMapper.writeValueAsString(field);
-            } catch (IOException e) {
-                return String.valueOf(field);
+    private Map<String, Object> bulkAction(String id) {
+        Map<String, Object> action = new LinkedHashMap<>();
+        action.put("_index", bulkIndex);
+        if (id != null) {
+            action.put("_id", id);
+        }
+        return Map.of("index", action);
+    }
+
+    private void writeDocumentsIntoArrowFile(List<Document> documents) {
+        try {
+            if (arrowWriter == null) {
+                // without mapping derived fields, the first document decides them and all columns are text
+                Map<String, String> fields = new LinkedHashMap<>();
+                documents.getFirst().keySet().forEach(field -> fields.put(field, "keyword"));
+                arrowWriter = new ArrowDocumentWriter(arrowOutput, fields, fileExtension.equals(ARROW_FILE_EXTENSION));
             }
+            arrowWriter.write(documents);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
+
+    private void writeDocumentsIntoCsvFile(List<Document> documents) {
+        documents.forEach(doc -> {
+            if (doc != null && !doc.isEmpty()) {
+                csvWriter.writeNext(projection.project(doc));
+            }
+        });
+    }
+
+    private static void printInConsole(List<Document> documents) {
+        documents.forEach(System.out::println);
+    }
 }
@@ -0,0 +1,19 @@
+package com.helmuth.shell.util;
+
+import com.helmuth.shell.model.Document;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads documents from an import file in batches, so only one batch is held in memory at a time.
+ */
+public interface DocumentReader extends Closeable {
+
+    /**
+     * Reads the next batch of documents.
+     * @return The next batch, empty once the file has been read completely
+     */
+    List<Document> nextBatch() throws IOException;
+}
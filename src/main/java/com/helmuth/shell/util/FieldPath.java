@@ -0,0 +1,117 @@
+package com.helmuth.shell.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dot path into a document, split once so extracting a value only walks the maps of the document.
+ */
+public class FieldPath {
+    private final String path;
+    private final String[] segments;
+
+    public FieldPath(String path) {
+        this.path = path;
+        this.segments = path.split("\\.");
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Selects the mapped fields matched by source filters.
+     * @param mappedFields The mapped fields by dot path
+     * @param includeFields Field patterns to keep, all fields if empty
+     * @param excludeFields Field patterns to drop
+     * @return The selected fields, in mapping order
+     */
+    public static Map<String, String> select(Map<String, String> mappedFields, List<String> includeFields, List<String> excludeFields) {
+        Map<String, String> selected = new LinkedHashMap<>();
+        mappedFields.forEach((path, type) -> {
+            if ((isNullOrEmpty(includeFields) || matchesAny(includeFields, path))
+                    && (isNullOrEmpty(excludeFields) || !matchesAny(excludeFields, path))) {
+                selected.put(path, type);
+            }
+        });
+        return selected;
+    }
+
+    /**
+     * Extracts the value at this path. Values of arrays of objects are collected into a list.
+     * @param document The document
+     * @return The value, or null if the document has none
+     */
+    public Object extract(Map<String, Object> document) {
+        if (segments.length == 1) {
+            return document.get(path);
+        }
+        // _source may hold dotted keys instead of nested objects
+        Object flat = document.get(path);
+        return flat != null ? flat : extract(document, 0);
+    }
+
+    private Object extract(Object value, int segment) {
+        if (segment == segments.length || value == null) {
+            return value;
+        }
+        if (value instanceof Map<?, ?> map) {
+            return extract(map.get(segments[segment]), segment + 1);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> values = new ArrayList<>(list.size());
+            for (Object element : list) {
+                Object extracted = extract(element, segment);
+                if (extracted instanceof List<?> nested) {
+                    values.addAll(nested);
+                } else if (extracted != null) {
+                    values.add(extracted);
+                }
+            }
+            return values.isEmpty() ? null : values;
+        }
+        return null;
+    }
+
+    private static boolean matchesAny(List<String> patterns, String path) {
+        return patterns.stream().anyMatch(pattern -> matches(pattern, path));
+    }
+
+    /**
+     * Matches a source filter pattern against a field path. Like source filtering, a pattern also selects
+     * everything below the object it names and may use * wildcards.
+     */
+    static boolean matches(String pattern, String path) {
+        if (path.equals(pattern) || path.startsWith(pattern + ".")) {
+            return true;
+        }
+        return pattern.contains("*") && globMatches(pattern, 0, path, 0);
+    }
+
+    private static boolean globMatches(String pattern, int p, String path, int s) {
+        while (p < pattern.length()) {
+            char c = pattern.charAt(p);
+            if (c == '*') {
+                for (int i = s; i <= path.length(); i++) {
+                    if (globMatches(pattern, p + 1, path, i)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (s >= path.length() || path.charAt(s) != c) {
+                return false;
+            }
+            p++;
+            s++;
+        }
+        return s == path.length() || path.charAt(s) == '.';
+    }
+
+    private static boolean isNullOrEmpty(Collection<?> collection) {
+        return collection == null || collection.isEmpty();
+    }
+}
@@ -0,0 +1,52 @@
+package com.helmuth.shell.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.helmuth.shell.model.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the documents of a JSON array, as written by {@link DocumentExporter}, one token at a time.
+ */
+public class JsonDocumentReader implements DocumentReader {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final JsonParser parser;
+    private final int batchSize;
+    private boolean exhausted;
+
+    public JsonDocumentReader(File file, int batchSize) throws IOException {
+        this.parser = objectMapper.getFactory().createParser(CompressionUtil.openInput(file));
+        this.batchSize = batchSize;
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IOException("Expected a JSON array of documents in " + file);
+        }
+    }
+
+    @Override
+    public List<Document> nextBatch() throws IOException {
+        List<Document> batch = new ArrayList<>(batchSize);
+        while (!exhausted && batch.size() < batchSize) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                batch.add(objectMapper.readValue(parser, Document.class));
+            } else if (token == JsonToken.END_ARRAY || token == null) {
+                exhausted = true;
+            } else {
+                throw new IOException("Expected a document but found " + token + " at " + parser.currentLocation());
+            }
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
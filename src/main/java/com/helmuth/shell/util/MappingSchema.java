@@ -0,0 +1,52 @@
+package com.helmuth.shell.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads field types from a schema file, either an index mapping as returned by the mappings command (with or
+ * without the surrounding "mappings") or a flat object of field paths to mapping types, e.g.
+ * {"price": "double", "user.id": "long"}.
+ */
+public class MappingSchema {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param file The schema file
+     * @return The mapping type by dot path, objects flattened into their sub-fields like the mapped fields of an index
+     */
+    public static Map<String, String> read(File file) throws IOException {
+        JsonNode root = objectMapper.readTree(file);
+        if (root.has("mappings")) {
+            root = root.get("mappings");
+        }
+        Map<String, String> fields = new LinkedHashMap<>();
+        if (root.has("properties")) {
+            collect("", root.get("properties"), fields);
+        } else {
+            root.fields().forEachRemaining(field -> fields.put(field.getKey(), field.getValue().asText()));
+        }
+        return fields;
+    }
+
+    private static void collect(String prefix, JsonNode properties, Map<String, String> fields) {
+        Iterator<Map.Entry<String, JsonNode>> iterator = properties.fields();
+        while (iterator.hasNext()) {
+            Map.Entry<String, JsonNode> property = iterator.next();
+            String path = prefix + property.getKey();
+            JsonNode definition = property.getValue();
+            String type = definition.path("type").asText("object");
+            if (type.equals("object") && definition.has("properties")) {
+                collect(path + ".", definition.get("properties"), fields);
+            } else {
+                fields.put(path, type);
+            }
+        }
+    }
+}
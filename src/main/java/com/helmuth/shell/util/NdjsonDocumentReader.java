@@ -0,0 +1,85 @@
+package com.helmuth.shell.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.helmuth.shell.model.Document;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads newline delimited JSON with one document per line. Files in bulk format, where every document is preceded
+ * by an index or create action, are read as well and keep the _id given in the action.
+ */
+public class NdjsonDocumentReader implements DocumentReader {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Set<String> SOURCE_ACTIONS = Set.of("index", "create");
+
+    private final BufferedReader reader;
+    private final int batchSize;
+    private long lineNumber;
+
+    public NdjsonDocumentReader(File file, int batchSize) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(CompressionUtil.openInput(file), StandardCharsets.UTF_8));
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public List<Document> nextBatch() throws IOException {
+        List<Document> batch = new ArrayList<>(batchSize);
+        String line;
+        while (batch.size() < batchSize && (line = nextLine()) != null) {
+            Document document = objectMapper.readValue(line, Document.class);
+            Map<?, ?> action = bulkAction(document);
+            if (action != null) {
+                String source = nextLine();
+                if (source == null) {
+                    throw new IOException("Missing document after bulk action on line " + lineNumber);
+                }
+                document = objectMapper.readValue(source, Document.class);
+                Object id = action.get("_id");
+                document.set_id(id != null ? id.toString() : null);
+            }
+            batch.add(document);
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String nextLine() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            lineNumber++;
+        } while (line != null && line.isBlank());
+        return line;
+    }
+
+    /**
+     * A bulk action line is a single index or create key whose object only holds metadata fields.
+     */
+    private Map<?, ?> bulkAction(Document line) throws IOException {
+        if (line.size() != 1) {
+            return null;
+        }
+        Map.Entry<String, Object> entry = line.entrySet().iterator().next();
+        if (!(entry.getValue() instanceof Map<?, ?> action)
+                || !action.keySet().stream().allMatch(key -> key.toString().startsWith("_"))) {
+            return null;
+        }
+        if (!SOURCE_ACTIONS.contains(entry.getKey())) {
+            throw new IOException("Unsupported bulk action " + entry.getKey() + " on line " + lineNumber);
+        }
+        return action;
+    }
+}
@@ -0,0 +1,309 @@
+package com.helmuth.shell.util;
+
+import com.helmuth.shell.model.Document;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.RFC4180Parser;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads documents from an uncompressed CSV file whose first row holds the field names, parsing it on several
+ * threads. The file is memory-mapped and split into chunks that end on record boundaries: a line break only
+ * ends a record outside quotes, and as RFC 4180 escapes quotes by doubling them, whether a position is inside
+ * quotes follows from the number of quotes before it. Every segment counts its quotes in parallel, which gives
+ * the quote parity at every segment start and so the first record boundary in it.
+ * <p>
+ * Chunks are parsed in parallel into batches that wait in a bounded queue for {@link #nextBatch()}, so parsing
+ * never runs further ahead of the caller than a few batches per thread.
+ */
+public class ParallelCsvReader implements DocumentReader {
+    private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final byte QUOTE = '"';
+    private static final byte NEWLINE = '\n';
+
+    private final FileChannel channel;
+    private final int batchSize;
+    private final ExecutorService executor;
+    private final BlockingQueue<Batch> batches;
+    private final AtomicInteger remainingChunks = new AtomicInteger();
+    private CsvRowConverter converter;
+    private boolean exhausted;
+
+    public ParallelCsvReader(File file, int batchSize, int threads) throws IOException {
+        this(file, batchSize, threads, Map.of(), DEFAULT_SEGMENT_SIZE);
+    }
+
+    public ParallelCsvReader(File file, int batchSize, int threads, Map<String, String> fieldTypes) throws IOException {
+        this(file, batchSize, threads, fieldTypes, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param file The file to read
+     * @param batchSize The number of documents per batch
+     * @param threads The number of threads parsing chunks
+     * @param fieldTypes The mapping type by field path, to convert cells to, e.g. from the target index mapping
+     * @param segmentSize The size chunks are split at, before moving their ends to the next record boundary
+     */
+    public ParallelCsvReader(File file, int batchSize, int threads, Map<String, String> fieldTypes, int segmentSize) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.batchSize = batchSize;
+        this.batches = new ArrayBlockingQueue<>(threads * 2);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "csv-parse");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            start(fieldTypes, segmentSize);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Document> nextBatch() throws IOException {
+        if (exhausted) {
+            return List.of();
+        }
+        Batch batch;
+        try {
+            batch = batches.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for parsed rows");
+        }
+        if (batch.failure() != null) {
+            exhausted = true;
+            throw batch.failure();
+        }
+        exhausted = batch.documents().isEmpty();
+        return batch.documents();
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        channel.close();
+    }
+
+    private void start(Map<String, String> fieldTypes, int segmentSize) throws IOException {
+        long size = channel.size();
+        long dataStart = headerEnd(size);
+        if (dataStart < 0) {
+            // no complete header row, so no documents either
+            batches.add(new Batch(List.of(), null));
+            return;
+        }
+        converter = new CsvRowConverter(parseHeader(decode(0, dataStart)), fieldTypes);
+
+        List<Long> boundaries = boundaries(dataStart, size, segmentSize);
+        remainingChunks.set(boundaries.size() - 1);
+        if (boundaries.size() == 1) {
+            batches.add(new Batch(List.of(), null));
+            return;
+        }
+        for (int chunk = 0; chunk < boundaries.size() - 1; chunk++) {
+            long start = boundaries.get(chunk);
+            long end = boundaries.get(chunk + 1);
+            executor.execute(() -> parseChunk(start, end));
+        }
+    }
+
+    /**
+     * @return The offset right after the header row, or -1 if the file has no line break outside quotes
+     */
+    private long headerEnd(long size) throws IOException {
+        boolean quoted = false;
+        for (long segmentStart = 0; segmentStart < size; segmentStart += Integer.MAX_VALUE) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart,
+                    Math.min(Integer.MAX_VALUE, size - segmentStart));
+            for (int i = 0; i < buffer.limit(); i++) {
+                byte b = buffer.get(i);
+                if (b == QUOTE) {
+                    quoted = !quoted;
+                } else if (b == NEWLINE && !quoted) {
+                    return segmentStart + i + 1;
+                }
+            }
+        }
+        return size > 0 ? size : -1;
+    }
+
+    /**
+     * Splits the data rows into chunks that start and end on record boundaries.
+     * @return The chunk boundaries, from the start of the data to the end of the file
+     */
+    private List<Long> boundaries(long dataStart, long size, int segmentSize) throws IOException {
+        List<Future<SegmentScan>> scans = new ArrayList<>();
+        for (long start = dataStart; start < size; start += segmentSize) {
+            long segmentStart = start;
+            long segmentEnd = Math.min(start + segmentSize, size);
+            scans.add(executor.submit(() -> scan(segmentStart, segmentEnd)));
+        }
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(dataStart);
+        boolean quoted = false;
+        try {
+            for (int segment = 0; segment < scans.size(); segment++) {
+                SegmentScan scan = scans.get(segment).get();
+                // the first segment starts right after the header, which is a boundary already
+                long boundary = quoted ? scan.firstNewlineQuoted() : scan.firstNewline();
+                if (segment > 0 && boundary >= 0) {
+                    boundaries.add(boundary + 1);
+                }
+                quoted ^= (scan.quotes() & 1) == 1;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while splitting the file");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException cause ? cause : new IOException(e.getCause());
+        }
+        if (boundaries.getLast() < size) {
+            boundaries.add(size);
+        }
+        return boundaries;
+    }
+
+    /**
+     * Counts the quotes of a segment and finds its first line break both for the case that the segment starts
+     * outside quotes and for the case that it starts inside them.
+     */
+    private SegmentScan scan(long start, long end) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        long quotes = 0;
+        long firstNewline = -1;
+        long firstNewlineQuoted = -1;
+        for (int i = 0; i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (b == QUOTE) {
+                quotes++;
+            } else if (b == NEWLINE) {
+                if ((quotes & 1) == 0 && firstNewline < 0) {
+                    firstNewline = start + i;
+                } else if ((quotes & 1) == 1 && firstNewlineQuoted < 0) {
+                    firstNewlineQuoted = start + i;
+                }
+            }
+        }
+        return new SegmentScan(quotes, firstNewline, firstNewlineQuoted);
+    }
+
+    private void parseChunk(long start, long end) {
+        try {
+            List<Document> batch = new ArrayList<>(batchSize);
+            try (CSVReader reader = reader(decode(start, end))) {
+                String[] row;
+                while ((row = readNext(reader)) != null) {
+                    batch.add(converter.toDocument(row));
+                    if (batch.size() == batchSize) {
+                        batches.put(new Batch(batch, null));
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.put(new Batch(batch, null));
+            }
+            if (remainingChunks.decrementAndGet() == 0) {
+                batches.put(new Batch(List.of(), null));
+            }
+        } catch (IOException e) {
+            failed(e);
+        } catch (RuntimeException e) {
+            failed(new IOException(e));
+        } catch (InterruptedException e) {
+            // closed while waiting for the caller to take batches
+        }
+    }
+
+    private void failed(IOException failure) {
+        try {
+            batches.put(new Batch(null, failure));
+        } catch (InterruptedException e) {
+            // closed, nobody is waiting for the failure anymore
+        }
+    }
+
+    private CharBuffer decode(long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("CSV record spanning more than 2 GB at offset " + start);
+        }
+        // chunks end on line breaks, which never split a UTF-8 sequence
+        return StandardCharsets.UTF_8.decode(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+    }
+
+    private static String[] parseHeader(CharBuffer chars) throws IOException {
+        try (CSVReader reader = reader(chars)) {
+            String[] headers = readNext(reader);
+            return headers != null ? headers : new String[0];
+        }
+    }
+
+    private static CSVReader reader(CharBuffer chars) {
+        return new CSVReaderBuilder(new CharBufferReader(chars))
+                .withCSVParser(new RFC4180Parser())
+                .build();
+    }
+
+    private static String[] readNext(CSVReader reader) throws IOException {
+        try {
+            return reader.readNext();
+        } catch (CsvValidationException e) {
+            throw new IOException("Invalid CSV row", e);
+        }
+    }
+
+    private record SegmentScan(long quotes, long firstNewline, long firstNewlineQuoted) {
+    }
+
+    private record Batch(List<Document> documents, IOException failure) {
+    }
+
+    /**
+     * Reads decoded characters without copying them into a string first.
+     */
+    private static class CharBufferReader extends Reader {
+        private final CharBuffer chars;
+
+        CharBufferReader(CharBuffer chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (!chars.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, chars.remaining());
+            chars.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.helmuth.shell.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip output stream that compresses fixed-size blocks on several threads. Every block becomes a gzip member of
+ * its own and members are written in order, which yields a regular multi-member gzip file that gzip and
+ * {@link java.util.zip.GZIPInputStream} read as one stream.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    private static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final int maxPending;
+    private byte[] block;
+    private int count;
+    private boolean closed;
+
+    public ParallelGzipOutputStream(OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, int blockSize, int threads) {
+        this.out = out;
+        this.block = new byte[blockSize];
+        this.maxPending = threads * 2;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "gzip-compress");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[count++] = (byte) b;
+        if (count == block.length) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == block.length) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Compresses the buffered data as a final, possibly short, member and waits until every member is written.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeMember(pending.poll());
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = count;
+        block = new byte[block.length];
+        count = 0;
+        pending.add(executor.submit(() -> compress(data, length)));
+        while (pending.size() > maxPending) {
+            writeMember(pending.poll());
+        }
+    }
+
+    private void writeMember(Future<byte[]> member) throws IOException {
+        try {
+            out.write(member.get());
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress block", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing output");
+        }
+    }
+
+    private static byte[] compress(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(data, 0, length);
+        }
+        return buffer.toByteArray();
+    }
+}
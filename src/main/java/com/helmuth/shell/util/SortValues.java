@@ -0,0 +1,62 @@
+package com.helmuth.shell.util;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+
+import java.util.List;
+
+public class SortValues {
+
+    /**
+     * Parses search_after values given on the command line. Integral values are read as longs, which is what
+     * the _shard_doc tiebreaker of a point in time returns, anything else is kept as a string.
+     * @param values The values as typed by the user
+     * @return The values to pass as search_after
+     */
+    public static List<FieldValue> parse(List<String> values) {
+        return values.stream()
+                .map(String::trim)
+                .map(SortValues::parse)
+                .toList();
+    }
+
+    /**
+     * Converts sort values to plain objects, e.g. to store them as JSON.
+     * @param values The sort values of a hit
+     * @return The values as longs, doubles, booleans, strings or nulls
+     */
+    public static List<Object> toObjects(List<FieldValue> values) {
+        return values.stream()
+                .map(value -> value.isNull() ? null : value._get())
+                .toList();
+    }
+
+    /**
+     * Converts plain objects back to sort values, the reverse of {@link #toObjects(List)}.
+     * @param values The values as read from JSON
+     * @return The sort values
+     */
+    public static List<FieldValue> fromObjects(List<Object> values) {
+        return values.stream()
+                .map(SortValues::fromObject)
+                .toList();
+    }
+
+    private static FieldValue fromObject(Object value) {
+        return switch (value) {
+            case null -> FieldValue.NULL;
+            case Double number -> FieldValue.of(number);
+            case Float number -> FieldValue.of(number.doubleValue());
+            case Number number -> FieldValue.of(number.longValue());
+            case Boolean bool -> FieldValue.of(bool);
+            default -> FieldValue.of(value.toString());
+        };
+    }
+
+    private static FieldValue parse(String value) {
+        try {
+            return FieldValue.of(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            return FieldValue.of(value);
+        }
+    }
+}